@@ -11,6 +11,12 @@ public class Account {
     private String username;
     private String password;
     private String category;
+    // Password still encrypted as stored in the vault; decrypted on each getPassword()
+    private byte[] sealedPassword;
+    // This record's ciphertext exactly as last read from or written to the vault,
+    // so saves can copy it instead of re-encrypting. Any setter drops both.
+    private String storedLine;     // passwords.txt line
+    private byte[] storedRecord;   // BinaryVault record, length prefixes included
     
     // Constructor
     public Account() {
@@ -23,6 +29,29 @@ public class Account {
         this.category = category;
     }
     
+    /**
+     * Creates an account whose password stays encrypted until it is read
+     * @param sealedPassword Password ciphertext from EncryptionUtil.encryptField
+     */
+    public static Account withSealedPassword(String accountName, String username, byte[] sealedPassword, String category) {
+        Account account = new Account(accountName, username, null, category);
+        account.sealedPassword = sealedPassword;
+        return account;
+    }
+    
+    /**
+     * Parses a decrypted passwords.txt record: name, username, password and
+     * category joined by commas
+     * @return The account, or null if the record has fewer than four fields
+     */
+    public static Account fromRecord(String record) {
+        String[] parts = record.split(",");
+        if (parts.length < 4) {
+            return null;
+        }
+        return new Account(parts[0], parts[1], parts[2], parts[3]);
+    }
+    
     // Getters
     public String getAccountName() {
         return accountName;
@@ -33,28 +62,73 @@ public class Account {
     }
     
     public String getPassword() {
+        if (password == null && sealedPassword != null) {
+            // Not cached, so the plaintext only lives as long as the caller keeps it
+            return EncryptionUtil.decryptField(sealedPassword);
+        }
         return password;
     }
     
+    /**
+     * @return The still-encrypted password, or null if the password is held in plaintext
+     */
+    byte[] getSealedPassword() {
+        return sealedPassword;
+    }
+    
     public String getCategory() {
         return category;
     }
     
+    /**
+     * @return true if the account changed since it was last read or saved,
+     *         so its stored ciphertext (if any) is out of date
+     */
+    boolean isDirty() {
+        return storedLine == null && storedRecord == null;
+    }
+    
+    String getStoredLine() {
+        return storedLine;
+    }
+    
+    void setStoredLine(String storedLine) {
+        this.storedLine = storedLine;
+    }
+    
+    byte[] getStoredRecord() {
+        return storedRecord;
+    }
+    
+    void setStoredRecord(byte[] storedRecord) {
+        this.storedRecord = storedRecord;
+    }
+    
+    private void markDirty() {
+        storedLine = null;
+        storedRecord = null;
+    }
+    
     // Setters
     public void setAccountName(String accountName) {
         this.accountName = accountName;
+        markDirty();
     }
     
     public void setUsername(String username) {
         this.username = username;
+        markDirty();
     }
     
     public void setPassword(String password) {
         this.password = password;
+        this.sealedPassword = null;
+        markDirty();
     }
     
     public void setCategory(String category) {
         this.category = category;
+        markDirty();
     }
     
     @Override
@@ -62,7 +136,7 @@ public class Account {
         return String.format("%s,%s,%s,%s",
             accountName,
             username,
-            password,
+            getPassword(),
             category
         );
     }
@@ -0,0 +1,160 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of one account record.
+ * Each field is written as an unsigned 16-bit byte length followed by its UTF-8 bytes,
+ * in the order name, username, password, category. Unlike the comma-joined text
+ * format, any character (including commas) round-trips safely.
+ *
+ * An instance owns a growable scratch buffer, so it should not be shared between threads.
+ *
+ * References:
+ * - Length-prefixed encoding: https://en.wikipedia.org/wiki/Type%E2%80%93length%E2%80%93value
+ * - ByteBuffer: https://docs.oracle.com/javase/8/docs/api/java/nio/ByteBuffer.html
+ */
+public class AccountCodec {
+    private static final int MAX_FIELD_BYTES = 0xFFFF;
+
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    /**
+     * Encodes an account into this codec's buffer
+     * @param account The account to encode
+     * @return Number of bytes written to buffer()
+     */
+    public int encode(Account account) {
+        length = 0;
+        putField(account.getAccountName());
+        putField(account.getUsername());
+        putField(account.getPassword());
+        putField(account.getCategory());
+        return length;
+    }
+
+    /**
+     * Encodes only the index fields (name, username, category), for records
+     * whose password is stored as a separate ciphertext
+     * @param account The account to encode
+     * @return Number of bytes written to buffer()
+     */
+    public int encodeIndex(Account account) {
+        length = 0;
+        putField(account.getAccountName());
+        putField(account.getUsername());
+        putField(account.getCategory());
+        return length;
+    }
+
+    /**
+     * Encodes a tagged entry: a type byte, then the key field if it is not null,
+     * then the account's four fields if it is not null. Used for journal records.
+     * @return Number of bytes written to buffer()
+     */
+    public int encodeEntry(byte type, String key, Account account) {
+        length = 0;
+        ensureCapacity(1);
+        buffer[length++] = type;
+        if (key != null) {
+            putField(key);
+        }
+        if (account != null) {
+            putField(account.getAccountName());
+            putField(account.getUsername());
+            putField(account.getPassword());
+            putField(account.getCategory());
+        }
+        return length;
+    }
+
+    /**
+     * @return The scratch buffer holding the last encoded record
+     */
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Decodes one account from the remaining bytes of a buffer.
+     * Reads straight from the buffer; the only objects created are the four field strings.
+     * @param in Buffer positioned at the start of an encoded record
+     * @return The decoded account
+     * @throws IllegalArgumentException If the record is truncated
+     */
+    public static Account decode(ByteBuffer in) {
+        try {
+            String accountName = getField(in);
+            String username = getField(in);
+            String password = getField(in);
+            String category = getField(in);
+            return new Account(accountName, username, password, category);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated account record");
+        }
+    }
+
+    /**
+     * Decodes the index fields written by encodeIndex
+     * @param in Buffer positioned at the start of an encoded index record
+     * @return {name, username, category}
+     * @throws IllegalArgumentException If the record is truncated
+     */
+    public static String[] decodeIndex(ByteBuffer in) {
+        try {
+            return new String[] { getField(in), getField(in), getField(in) };
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated account record");
+        }
+    }
+
+    /**
+     * Decodes one length-prefixed field, e.g. the key of an entry from encodeEntry
+     * @throws IllegalArgumentException If the field is truncated
+     */
+    public static String decodeField(ByteBuffer in) {
+        try {
+            return getField(in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated account record");
+        }
+    }
+
+    private void putField(String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_FIELD_BYTES) {
+            throw new IllegalArgumentException("Field longer than " + MAX_FIELD_BYTES + " bytes");
+        }
+        ensureCapacity(length + 2 + bytes.length);
+        buffer[length++] = (byte) (bytes.length >>> 8);
+        buffer[length++] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private static String getField(ByteBuffer in) {
+        int fieldLength = in.getShort() & 0xFFFF;
+        if (fieldLength > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), fieldLength, StandardCharsets.UTF_8);
+            in.position(in.position() + fieldLength);
+        } else {
+            byte[] bytes = new byte[fieldLength];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private void ensureCapacity(int size) {
+        if (buffer.length < size) {
+            byte[] larger = new byte[Math.max(size, buffer.length * 2)];
+            System.arraycopy(buffer, 0, larger, 0, length);
+            buffer = larger;
+        }
+    }
+}
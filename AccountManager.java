@@ -11,34 +11,99 @@ import java.util.Base64;
  * File operations: https://www.baeldung.com/java-write-to-file
  * Map computeIfAbsent: https://stackoverflow.com/questions/21714275/java-8-mapcomputeifabsent-method
  */
-public class AccountManager {
-    private Map<String, List<Account>> accountsByCategory;
+public final class AccountManager {
+    // Category index: category -> (account name -> account), insertion ordered
+    private Map<String, Map<String, Account>> accountsByCategory;
+    // Primary index: account name -> account
+    private Map<String, Account> accountsByName;
+    // Name and username search, built on first search and then kept up to date
+    private AccountSearchIndex searchIndex;
     private static final String FILE_PATH = "passwords.txt";
+    private static final String VAULT_PATH = "passwords.vault";
+    private static final String SEALED_PATH = "passwords.gcm";
+    private static final String JOURNAL_PATH = "passwords.journal";
+    private static final String SHARD_DIR = "vault";
     private FileManager fileManager;
+    private final boolean journaled;
+    private final int journalCompactThreshold;
+    private final boolean parallelLoad;
+    private final String vaultFormat;
+    private final boolean lazyPasswords;
+    private VaultJournal journal;
+    private WriteBehindWriter writer;
+    // Set when the vault file exists but could not be read or verified
+    private boolean vaultUnreadable;
+    // Sharded format: categories listed in the manifest but not read yet,
+    // and categories changed since the last save
+    private ShardedVault shardedVault;
+    private final Set<String> unloadedCategories = new HashSet<>();
+    private final Set<String> dirtyCategories = new HashSet<>();
+    private boolean loadingShard;
+    // Bumped on every change to the vault's contents; used as an ETag by VaultHttpServer
+    private long version;
     
     public AccountManager() {
         this.accountsByCategory = new HashMap<>();
+        this.accountsByName = new HashMap<>();
         this.fileManager = new FileManager();
+        String persistenceMode = AppConfig.get("PERSISTENCE_MODE", "snapshot");
+        this.journaled = "journal".equalsIgnoreCase(persistenceMode);
+        this.journalCompactThreshold = AppConfig.getInt("JOURNAL_COMPACT_THRESHOLD", 1000);
+        this.parallelLoad = "parallel".equalsIgnoreCase(AppConfig.get("LOAD_MODE", "serial"));
+        this.vaultFormat = AppConfig.get("VAULT_FORMAT", "text").toLowerCase();
+        this.lazyPasswords = AppConfig.getBoolean("LAZY_PASSWORDS", false);
         loadAccountsFromFile();
+        if (journaled) {
+            // Snapshot first, then every change made since it was written
+            journal = new VaultJournal(JOURNAL_PATH);
+            journal.replay(this);
+        }
+        // Loading and replay go through index(); what was on disk at startup is not a change
+        version = 0;
+        if ("writebehind".equalsIgnoreCase(persistenceMode)) {
+            String policyName = AppConfig.get("SAVE_POLICY", "always");
+            WriteBehindWriter.SavePolicy policy;
+            try {
+                policy = WriteBehindWriter.SavePolicy.valueOf(policyName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                Diagnostics.warn("Unknown SAVE_POLICY {}; using always", policyName);
+                policy = WriteBehindWriter.SavePolicy.ALWAYS;
+            }
+            writer = new WriteBehindWriter(this, fileManager, policy, AppConfig.getInt("SAVE_INTERVAL_MS", 1000));
+            writer.start();
+        }
     }
     
-    public List<Account> viewAccounts() {
-        System.out.println("Debug - Viewing all accounts");
-        List<Account> allAccounts = new ArrayList<>();
-        for (List<Account> accounts : accountsByCategory.values()) {
-            allAccounts.addAll(accounts);
-        }
-        System.out.println("Debug - Total accounts found: " + allAccounts.size());
-        System.out.println("Debug - Categories: " + accountsByCategory.keySet());
+    public synchronized List<Account> viewAccounts() {
+        ensureAllLoaded();
+        List<Account> allAccounts = new ArrayList<>(accountsByName.size());
+        for (Map<String, Account> accounts : accountsByCategory.values()) {
+            allAccounts.addAll(accounts.values());
+        }
+        if (Diagnostics.isDebugEnabled()) {
+            Diagnostics.debug("Viewing {} accounts in categories {}", allAccounts.size(), accountsByCategory.keySet());
+        }
         return allAccounts;
     }
     
     private void loadAccountsFromFile() {
         accountsByCategory.clear();
+        accountsByName.clear();
+        searchIndex = null;
+        
+        if (vaultFormat.equals("sharded")) {
+            openShardedVault();
+            return;
+        }
+        if (!vaultFormat.equals("text")) {
+            loadRecordVault();
+            logLoadedCategories();
+            return;
+        }
+        
         File file = new File(FILE_PATH);
         
-        System.out.println("\nDebug - Loading accounts from: " + FILE_PATH);
-        System.out.println("Debug - File exists: " + file.exists());
+        Diagnostics.debug("Loading accounts from: {}", FILE_PATH);
         
         if (!file.exists()) {
             System.out.println("No password file found. Creating new file.");
@@ -50,17 +115,17 @@ public class AccountManager {
             return;
         }
         
-        try {
-            // First, let's see what's in the file
-            System.out.println("\nDebug - File contents:");
-            BufferedReader debugReader = new BufferedReader(new FileReader(file));
-            String debugLine;
-            while ((debugLine = debugReader.readLine()) != null) {
-                System.out.println("Raw line: " + debugLine);
-            }
-            debugReader.close();
-        } catch (IOException e) {
-            System.out.println("Error reading file for debug: " + e.getMessage());
+        loadTextVault(file);
+        logLoadedCategories();
+    }
+
+    /**
+     * Reads passwords.txt (one Base64 record per line), serially or in parallel
+     */
+    private void loadTextVault(File file) {
+        if (parallelLoad) {
+            loadAccountsInParallel(file);
+            return;
         }
         
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
@@ -68,119 +133,585 @@ public class AccountManager {
             while ((line = reader.readLine()) != null) {
                 if (!line.trim().isEmpty()) {
                     try {
-                        System.out.println("\nDebug - Processing line: " + line);
                         String decryptedLine = EncryptionUtil.decrypt(line);
-                        System.out.println("Debug - Decrypted line: " + decryptedLine);
-                        
-                        String[] parts = decryptedLine.split(",");
-                        System.out.println("Debug - Parts length: " + parts.length);
-                        if (parts.length >= 4) {
-                            Account account = new Account(
-                                parts[0],  // accountName
-                                parts[1],  // username
-                                parts[2],  // password
-                                parts[3]   // category
-                            );
-                            String category = account.getCategory();
-                            accountsByCategory.computeIfAbsent(category, k -> new ArrayList<>()).add(account);
-                            System.out.println("Debug - Added account: " + account.getAccountName() + " to category: " + category);
+                        Account account = Account.fromRecord(decryptedLine);
+                        if (account != null) {
+                            account.setStoredLine(line);
+                            index(account);
+                            Diagnostics.trace("Loaded account {} into category {}", account.getAccountName(), account.getCategory());
                         }
                     } catch (Exception e) {
-                        System.out.println("Debug - Error processing line: " + e.getMessage());
-                        e.printStackTrace();
+                        Diagnostics.error("Error processing vault record", e);
                     }
                 }
             }
         } catch (IOException e) {
             System.out.println("Error reading file: " + e.getMessage());
-            e.printStackTrace();
+            Diagnostics.stackTrace(e);
+        }
+    }
+
+    /**
+     * Reads passwords.vault (binary records) or passwords.gcm (sealed stream).
+     * If it does not exist yet but passwords.txt does, the text vault is
+     * converted once and kept as passwords.txt.migrated.
+     */
+    private void loadRecordVault() {
+        boolean sealed = vaultFormat.equals("stream");
+        File vault = new File(sealed ? SEALED_PATH : VAULT_PATH);
+        Diagnostics.debug("Loading accounts from: {}", vault);
+        
+        if (!vault.exists()) {
+            File legacy = new File(FILE_PATH);
+            if (legacy.exists() && legacy.length() > 0) {
+                System.out.println("Migrating " + FILE_PATH + " to the " + vaultFormat + " vault format...");
+                loadTextVault(legacy);
+                fileManager.saveData(this);
+                if (vault.exists() && legacy.renameTo(new File(FILE_PATH + ".migrated"))) {
+                    System.out.println("Migrated " + accountsByName.size() + " accounts to " + vault);
+                }
+            }
+            return;
         }
         
-        System.out.println("\nDebug - Loaded categories: " + accountsByCategory.keySet());
-        for (Map.Entry<String, List<Account>> entry : accountsByCategory.entrySet()) {
-            System.out.println("Debug - Category '" + entry.getKey() + "' has " + entry.getValue().size() + " accounts");
-            for (Account acc : entry.getValue()) {
-                System.out.println("  - " + acc.getAccountName());
+        try {
+            if (sealed) {
+                StreamVault.read(vault, this::index);
+            } else {
+                BinaryVault.read(vault, lazyPasswords, this::index);
             }
+        } catch (IOException e) {
+            vaultUnreadable = true;
+            System.out.println("Error reading vault: " + e.getMessage());
+            System.out.println("Changes will not be saved, so " + vault + " is left untouched.");
+            Diagnostics.stackTrace(e);
         }
     }
 
-    public void addAccount(Account account) {
-        System.out.println("\nDebug - Adding account: " + account.getAccountName());
-        String category = account.getCategory();
-        accountsByCategory.computeIfAbsent(category, k -> new ArrayList<>()).add(account);
-        System.out.println("Debug - Added to category: " + category);
-        System.out.println("Debug - Current categories: " + accountsByCategory.keySet());
+    /**
+     * Opens vault/ by reading only its manifest; categories are read on first use.
+     * If there is no manifest yet but passwords.txt exists, it is converted once.
+     */
+    private void openShardedVault() {
+        try {
+            shardedVault = new ShardedVault(new File(SHARD_DIR));
+        } catch (IOException e) {
+            vaultUnreadable = true;
+            System.out.println("Error reading vault: " + e.getMessage());
+            System.out.println("Changes will not be saved, so " + SHARD_DIR + " is left untouched.");
+            Diagnostics.stackTrace(e);
+            return;
+        }
         
-        // Save directly to file first
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH, true))) {
-            String accountData = String.format("%s,%s,%s,%s",
-                account.getAccountName(),
-                account.getUsername(),
-                account.getPassword(),
-                account.getCategory()
-            );
-            String encryptedData = EncryptionUtil.encrypt(accountData);
-            writer.println(encryptedData);
-            System.out.println("Debug - Written to file: " + encryptedData);
+        File legacy = new File(FILE_PATH);
+        if (!shardedVault.exists() && legacy.exists() && legacy.length() > 0) {
+            System.out.println("Migrating " + FILE_PATH + " to the sharded vault format...");
+            loadTextVault(legacy);
+            fileManager.saveData(this);
+            if (shardedVault.exists() && legacy.renameTo(new File(FILE_PATH + ".migrated"))) {
+                System.out.println("Migrated " + accountsByName.size() + " accounts to " + SHARD_DIR);
+            }
+            return;
+        }
+        unloadedCategories.addAll(shardedVault.categories());
+        Diagnostics.debug("Opened sharded vault with categories {}", unloadedCategories);
+    }
+
+    /**
+     * Reads a category's shard the first time it is needed
+     */
+    private void ensureLoaded(String category) {
+        if (shardedVault == null || !unloadedCategories.remove(category)) {
+            return;
+        }
+        loadingShard = true;
+        try {
+            int count = shardedVault.loadCategory(category, lazyPasswords, this::index);
+            if (Diagnostics.isDebugEnabled()) {
+                Diagnostics.debug("Loaded category {} ({} accounts)", category, count);
+            }
+        } catch (IOException e) {
+            vaultUnreadable = true;
+            System.out.println("Error reading category " + category + ": " + e.getMessage());
+            System.out.println("Changes will not be saved, so " + SHARD_DIR + " is left untouched.");
+            Diagnostics.stackTrace(e);
+        } finally {
+            loadingShard = false;
+        }
+    }
+
+    /**
+     * Reads every not-yet-loaded shard that might hold the given account name
+     */
+    private void ensureLoadedFor(String accountName) {
+        if (shardedVault == null || unloadedCategories.isEmpty() || accountsByName.containsKey(accountName)) {
+            return;
+        }
+        for (String category : new ArrayList<>(unloadedCategories)) {
+            if (shardedVault.mightContain(category, accountName)) {
+                ensureLoaded(category);
+            }
+        }
+    }
+
+    private void ensureAllLoaded() {
+        for (String category : new ArrayList<>(unloadedCategories)) {
+            ensureLoaded(category);
+        }
+    }
+
+    /**
+     * Hands the categories changed since the last save to FileManager,
+     * each with a copy of its complete contents (empty if the category is gone)
+     */
+    synchronized Map<String, List<Account>> takeDirtyCategories() {
+        Map<String, List<Account>> changed = new HashMap<>();
+        for (String category : dirtyCategories) {
+            Map<String, Account> accounts = accountsByCategory.get(category);
+            changed.put(category, accounts == null ? new ArrayList<>() : new ArrayList<>(accounts.values()));
+        }
+        dirtyCategories.clear();
+        return changed;
+    }
+
+    /**
+     * Marks categories as changed again after a failed save
+     */
+    synchronized void restoreDirtyCategories(Collection<String> categories) {
+        dirtyCategories.addAll(categories);
+    }
+
+    ShardedVault getShardedVault() {
+        return shardedVault;
+    }
+
+    private void logLoadedCategories() {
+        if (Diagnostics.isDebugEnabled()) {
+            for (Map.Entry<String, Map<String, Account>> entry : accountsByCategory.entrySet()) {
+                Diagnostics.debug("Category '{}' has {} accounts", entry.getKey(), entry.getValue().size());
+            }
+        }
+    }
+
+    private void loadAccountsInParallel(File file) {
+        ParallelVaultLoader loader = new ParallelVaultLoader(
+            AppConfig.getInt("LOAD_THREADS", 0),
+            AppConfig.getInt("LOAD_CHUNK_SIZE", 2048)
+        );
+        try {
+            for (Account account : loader.load(file)) {
+                index(account);
+            }
         } catch (IOException e) {
-            System.out.println("Error writing to file: " + e.getMessage());
+            System.out.println("Error reading file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a new account. Account names are unique.
+     * @param account The account to add
+     * @return false if an account with the same name already exists, the vault format
+     *         cannot store it (see canStore), or the change could not be journaled
+     */
+    public synchronized boolean addAccount(Account account) {
+        if (!canStore(account)) {
+            reportUnstorable(account);
+            return false;
+        }
+        ensureLoadedFor(account.getAccountName());
+        ensureLoaded(account.getCategory());
+        if (accountsByName.containsKey(account.getAccountName())) {
+            System.out.println("Account already exists: " + account.getAccountName());
+            return false;
         }
+        if (journaled) {
+            try {
+                journal.recordAdd(account);
+            } catch (IOException e) {
+                reportJournalError(e);
+                return false;
+            }
+        }
+        index(account);
+        Diagnostics.debug("Added account {} to category {}", account.getAccountName(), account.getCategory());
         
-        // Then update in-memory data
-        fileManager.saveData(this);
+        if (journaled) {
+            compactJournalIfNeeded();
+        } else {
+            saveChanges();
+        }
         System.out.println("Added account: " + account.getAccountName());
-        
-        // Verify the file was written
-        System.out.println("\nDebug - Verifying file contents after add:");
-        loadAccountsFromFile();
+        return true;
     }
 
-    public void modifyAccount(Account oldAccount, Account newAccount) {
-        String oldCategory = oldAccount.getCategory();
-        List<Account> categoryAccounts = accountsByCategory.get(oldCategory);
-        
-        if (categoryAccounts != null) {
-            for (int i = 0; i < categoryAccounts.size(); i++) {
-                if (categoryAccounts.get(i).getAccountName().equals(oldAccount.getAccountName())) {
-                    categoryAccounts.set(i, newAccount);
-                    fileManager.saveData(this);
-                    System.out.println("Modified: " + oldAccount.getAccountName());
-                    return;
+    /**
+     * Adds a batch of imported accounts without saving; call commitImport() once
+     * after the last batch. An account whose name is taken by one with a different
+     * username is added as "name (username)", so several logins for one site all
+     * come in. An account identical to the one already stored is left alone.
+     * @param accounts The accounts to add
+     * @param conflicts Receives the accounts not added because their name is taken
+     *                  by a different account
+     * @param unstorable Receives the accounts not added because the vault format
+     *                   cannot store them (see canStore)
+     * @return The accounts added, possibly under a new name
+     */
+    synchronized List<Account> importAccounts(List<Account> accounts, List<Account> conflicts,
+                                              List<Account> unstorable) {
+        List<Account> added = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            if (!canStore(account)) {
+                unstorable.add(account);
+                continue;
+            }
+            String name = account.getAccountName();
+            ensureLoadedFor(name);
+            Account existing = accountsByName.get(name);
+            if (existing != null && !existing.getUsername().equals(account.getUsername())
+                    && !account.getUsername().isEmpty()) {
+                name = name + " (" + account.getUsername() + ")";
+                ensureLoadedFor(name);
+                existing = accountsByName.get(name);
+            }
+            if (existing != null) {
+                if (!isSame(existing, account)) {
+                    conflicts.add(account);
                 }
+                continue;
+            }
+            if (!name.equals(account.getAccountName())) {
+                account = new Account(name, account.getUsername(), account.getPassword(), account.getCategory());
             }
+            ensureLoaded(account.getCategory());
+            index(account);
+            added.add(account);
+        }
+        if (Diagnostics.isDebugEnabled()) {
+            Diagnostics.debug("Imported {} of {} accounts", added.size(), accounts.size());
         }
-        System.out.println("Account not found: " + oldAccount.getAccountName());
+        return added;
     }
 
-    public void deleteAccount(String accountName) {
-        boolean found = false;
-        
-        for (List<Account> accounts : accountsByCategory.values()) {
-            for (Iterator<Account> iterator = accounts.iterator(); iterator.hasNext();) {
-                Account account = iterator.next();
-                if (account.getAccountName().equals(accountName)) {
-                    iterator.remove();
-                    found = true;
-                    break;
-                }
+    /**
+     * Saves everything added by importAccounts() in one write: a snapshot in
+     * journal mode (rather than one journal entry per account), otherwise the
+     * usual save
+     */
+    synchronized void commitImport() {
+        if (journaled) {
+            checkpoint();
+        } else {
+            saveChanges();
+        }
+    }
+
+    private static boolean isSame(Account a, Account b) {
+        return a.getUsername().equals(b.getUsername())
+            && a.getPassword().equals(b.getPassword())
+            && a.getCategory().equals(b.getCategory());
+    }
+
+    /**
+     * @return false if the configured vault format cannot store the account as it
+     *         is: the text format joins fields with commas, so none may contain one
+     */
+    public boolean canStore(Account account) {
+        return fileManager.canStore(account);
+    }
+
+    private static void reportUnstorable(Account account) {
+        System.out.println("Cannot store " + account.getAccountName()
+            + ": the text vault cannot hold commas; remove them or use VAULT_FORMAT=binary");
+    }
+
+    /**
+     * Looks up an account by name in constant time
+     * @param accountName The account name
+     * @return The account, or null if there is none
+     */
+    public synchronized Account findAccount(String accountName) {
+        ensureLoadedFor(accountName);
+        return accountsByName.get(accountName);
+    }
+
+    public void modifyAccount(Account oldAccount, Account newAccount) {
+        updateAccount(oldAccount.getAccountName(), newAccount);
+    }
+
+    /**
+     * Replaces an account. The new version may have a different name or category;
+     * both indexes are updated in constant time.
+     * @param accountName Current name of the account
+     * @param newAccount The replacement
+     * @return false if the account does not exist, the new name is taken, the vault
+     *         format cannot store the new version (see canStore), or the change could not be journaled
+     */
+    public synchronized boolean updateAccount(String accountName, Account newAccount) {
+        if (!canStore(newAccount)) {
+            reportUnstorable(newAccount);
+            return false;
+        }
+        ensureLoadedFor(accountName);
+        ensureLoadedFor(newAccount.getAccountName());
+        ensureLoaded(newAccount.getCategory());
+        Account oldAccount = accountsByName.get(accountName);
+        if (oldAccount == null) {
+            System.out.println("Account not found: " + accountName);
+            return false;
+        }
+        if (!accountName.equals(newAccount.getAccountName())
+                && accountsByName.containsKey(newAccount.getAccountName())) {
+            System.out.println("Account already exists: " + newAccount.getAccountName());
+            return false;
+        }
+        if (journaled) {
+            try {
+                journal.recordModify(accountName, newAccount);
+            } catch (IOException e) {
+                reportJournalError(e);
+                return false;
             }
-            if (found) break;
         }
+        unindex(oldAccount);
+        index(newAccount);
         
-        if (found) {
-            fileManager.saveData(this);
-            System.out.println("Deleted: " + accountName);
+        if (journaled) {
+            compactJournalIfNeeded();
         } else {
+            saveChanges();
+        }
+        System.out.println("Modified: " + accountName);
+        return true;
+    }
+
+    /**
+     * Renames an account, keeping its other details
+     * @param oldName Current name
+     * @param newName New name
+     * @return false if the account does not exist or the new name is taken
+     */
+    public synchronized boolean renameAccount(String oldName, String newName) {
+        ensureLoadedFor(oldName);
+        Account account = accountsByName.get(oldName);
+        if (account == null) {
+            System.out.println("Account not found: " + oldName);
+            return false;
+        }
+        return updateAccount(oldName, new Account(newName, account.getUsername(), account.getPassword(), account.getCategory()));
+    }
+
+    /**
+     * Moves an account to another category, removing it from the old one
+     * @param accountName The account name
+     * @param newCategory The destination category
+     * @return false if the account does not exist
+     */
+    public synchronized boolean moveAccount(String accountName, String newCategory) {
+        ensureLoadedFor(accountName);
+        Account account = accountsByName.get(accountName);
+        if (account == null) {
             System.out.println("Account not found: " + accountName);
+            return false;
+        }
+        return updateAccount(accountName, new Account(accountName, account.getUsername(), account.getPassword(), newCategory));
+    }
+
+    /**
+     * Deletes an account by name in constant time
+     * @param accountName The account name
+     * @return false if the account does not exist or the change could not be journaled
+     */
+    public synchronized boolean deleteAccount(String accountName) {
+        ensureLoadedFor(accountName);
+        Account account = accountsByName.get(accountName);
+        
+        if (account != null) {
+            if (journaled) {
+                try {
+                    journal.recordDelete(accountName);
+                } catch (IOException e) {
+                    reportJournalError(e);
+                    return false;
+                }
+            }
+            unindex(account);
+            if (journaled) {
+                compactJournalIfNeeded();
+            } else {
+                saveChanges();
+            }
+            System.out.println("Deleted: " + accountName);
+            return true;
         }
+        System.out.println("Account not found: " + accountName);
+        return false;
+    }
+
+    /**
+     * Searches account names and usernames by prefix or substring
+     * @param query Search text, case-insensitive
+     * @param limit Maximum number of results
+     * @return Matching accounts, best match first
+     */
+    public synchronized List<Account> search(String query, int limit) {
+        ensureAllLoaded();
+        if (searchIndex == null) {
+            searchIndex = new AccountSearchIndex();
+            for (Account account : accountsByName.values()) {
+                searchIndex.add(account);
+            }
+        }
+        List<Account> results = new ArrayList<>();
+        for (String name : searchIndex.search(query, limit)) {
+            results.add(accountsByName.get(name));
+        }
+        return results;
+    }
+
+    /**
+     * @return A number that changes whenever an account is added, modified or deleted
+     */
+    public synchronized long getVersion() {
+        return version;
     }
 
-    public List<String> getAllCategories() {
-        return new ArrayList<>(accountsByCategory.keySet());
+    /**
+     * @return false if the vault on disk could not be read, in which case
+     *         saving would overwrite it with incomplete data
+     */
+    public boolean isWritable() {
+        return !vaultUnreadable;
+    }
+
+    public synchronized List<String> getAllCategories() {
+        Set<String> categories = new LinkedHashSet<>(accountsByCategory.keySet());
+        categories.addAll(unloadedCategories);
+        return new ArrayList<>(categories);
     }
     
-    public List<Account> getAccountsByCategory(String category) {
-        return accountsByCategory.getOrDefault(category, new ArrayList<>());
+    public synchronized List<Account> getAccountsByCategory(String category) {
+        ensureLoaded(category);
+        Map<String, Account> accounts = accountsByCategory.get(category);
+        return accounts == null ? new ArrayList<>() : new ArrayList<>(accounts.values());
+    }
+
+    /**
+     * Records a change to a category. Reading a shard from disk is not a change.
+     */
+    private void markDirty(String category) {
+        if (loadingShard) {
+            return;
+        }
+        version++;
+        if (shardedVault != null) {
+            dirtyCategories.add(category);
+        }
+    }
+
+    /**
+     * Inserts an account into both indexes, replacing any account with the same name
+     */
+    private void index(Account account) {
+        Account previous = accountsByName.put(account.getAccountName(), account);
+        if (previous != null) {
+            removeFromCategory(previous);
+        }
+        accountsByCategory.computeIfAbsent(account.getCategory(), k -> new LinkedHashMap<>())
+            .put(account.getAccountName(), account);
+        markDirty(account.getCategory());
+        if (searchIndex != null) {
+            searchIndex.add(account);
+        }
+    }
+
+    /**
+     * Removes an account from both indexes
+     */
+    private void unindex(Account account) {
+        accountsByName.remove(account.getAccountName());
+        removeFromCategory(account);
+        if (searchIndex != null) {
+            searchIndex.remove(account.getAccountName());
+        }
+    }
+
+    private void removeFromCategory(Account account) {
+        markDirty(account.getCategory());
+        Map<String, Account> accounts = accountsByCategory.get(account.getCategory());
+        if (accounts != null) {
+            accounts.remove(account.getAccountName());
+            if (accounts.isEmpty()) {
+                accountsByCategory.remove(account.getCategory());
+            }
+        }
+    }
+
+    /**
+     * Writes the full vault to passwords.txt. In journal mode this is also
+     * the compaction point: once the snapshot is on disk the journal is emptied.
+     */
+    public synchronized void checkpoint() {
+        fileManager.saveData(this);
+        if (journaled) {
+            journal.truncate();
+        }
+    }
+
+    /**
+     * Final save before the program exits. Waits for any background write,
+     * then makes sure the latest state is on disk.
+     */
+    public void close() {
+        if (writer != null) {
+            writer.close();
+        } else {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Persists a change in snapshot or write-behind mode
+     */
+    private void saveChanges() {
+        if (writer != null) {
+            writer.requestSave();
+        } else {
+            fileManager.saveData(this);
+        }
+    }
+
+    /**
+     * Reports a journal write that failed; the change it was for is not made
+     */
+    private static void reportJournalError(IOException e) {
+        System.out.println("Error writing journal, change not saved: " + e.getMessage());
+        Diagnostics.stackTrace(e);
+    }
+
+    private void compactJournalIfNeeded() {
+        if (journal.size() >= journalCompactThreshold) {
+            checkpoint();
+        }
+    }
+
+    // Journal replay: applied to memory only, and safe to apply twice
+
+    void replayAdd(Account account) {
+        ensureLoadedFor(account.getAccountName());
+        ensureLoaded(account.getCategory());
+        index(account);
+    }
+
+    void replayModify(String oldName, Account account) {
+        replayDelete(oldName);
+        replayAdd(account);
+    }
+
+    void replayDelete(String accountName) {
+        ensureLoadedFor(accountName);
+        Account account = accountsByName.get(accountName);
+        if (account != null) {
+            unindex(account);
+        }
     }
-} 
\ No newline at end of file
+}
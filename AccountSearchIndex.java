@@ -0,0 +1,189 @@
+import java.util.*;
+
+/**
+ * In-memory search index over account names and usernames.
+ * Short queries (1-2 characters) use a sorted key map for prefix lookups;
+ * longer queries start from the rarest of their trigrams and confirm the substring.
+ * The index is updated on every add, modify and delete, so searches never scan the vault.
+ *
+ * Results are ranked: exact name, name prefix, exact username, username prefix,
+ * then substring matches; ties are broken by shorter name, then alphabetically.
+ *
+ * References:
+ * - N-gram indexing: https://en.wikipedia.org/wiki/N-gram#n-grams_for_approximate_matching
+ * - TreeMap subMap for prefix search: https://stackoverflow.com/questions/11770400/how-to-do-prefix-search-in-java
+ */
+public class AccountSearchIndex {
+    private static final int GRAM = 3;
+
+    // Lowercased name or username -> account names having that key
+    private final NavigableMap<String, Set<String>> keys = new TreeMap<>();
+    // Trigram -> account names whose name or username contains it
+    private final Map<String, Set<String>> grams = new HashMap<>();
+    // Account name -> lowercased [name, username], needed for removal and ranking
+    private final Map<String, String[]> fields = new HashMap<>();
+
+    /**
+     * Adds or replaces the entry for an account
+     * @param account The account to index
+     */
+    public void add(Account account) {
+        String name = account.getAccountName();
+        remove(name);
+        String[] entry = {
+            name.toLowerCase(),
+            account.getUsername() == null ? "" : account.getUsername().toLowerCase()
+        };
+        fields.put(name, entry);
+        for (String field : entry) {
+            keys.computeIfAbsent(field, k -> new HashSet<>()).add(name);
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                grams.computeIfAbsent(field.substring(i, i + GRAM), k -> new HashSet<>()).add(name);
+            }
+        }
+    }
+
+    /**
+     * Removes an account from the index
+     * @param accountName Name of the account
+     */
+    public void remove(String accountName) {
+        String[] entry = fields.remove(accountName);
+        if (entry == null) {
+            return;
+        }
+        for (String field : entry) {
+            removePosting(keys, field, accountName);
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                removePosting(grams, field.substring(i, i + GRAM), accountName);
+            }
+        }
+    }
+
+    /**
+     * Finds accounts whose name or username starts with or contains the query
+     * @param query Search text, case-insensitive
+     * @param limit Maximum number of results
+     * @return Matching account names, best match first
+     */
+    public List<String> search(String query, int limit) {
+        String q = query.trim().toLowerCase();
+        if (q.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Collection<String> candidates;
+        if (q.length() < GRAM) {
+            candidates = prefixCandidates(q);
+        } else {
+            candidates = trigramCandidates(q);
+        }
+
+        // Keep only the best `limit` matches in a heap whose head is the worst of them
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, Comparator.reverseOrder());
+        for (String name : candidates) {
+            int score = score(fields.get(name), q);
+            if (score == 0) {
+                continue;
+            }
+            if (best.size() == limit && !best.peek().isBeatenBy(name, score)) {
+                continue;
+            }
+            best.add(new Match(name, score));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<String> ranked = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ranked.add(best.poll().name);
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    /**
+     * Every account with a name or username starting with q, each listed once
+     */
+    private Collection<String> prefixCandidates(String q) {
+        List<String> found = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : keys.subMap(q, true, q + Character.MAX_VALUE, false).entrySet()) {
+            for (String name : entry.getValue()) {
+                // An account whose name and username both match is reached through its name key only
+                String[] entryFields = fields.get(name);
+                if (entry.getKey().equals(entryFields[0]) || !entryFields[0].startsWith(q)) {
+                    found.add(name);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Candidates for a substring query: the smallest posting set among the query's
+     * trigrams. Each candidate is confirmed by score(), so no set intersection is built.
+     */
+    private Collection<String> trigramCandidates(String q) {
+        Set<String> smallest = null;
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            Set<String> names = grams.get(q.substring(i, i + GRAM));
+            if (names == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || names.size() < smallest.size()) {
+                smallest = names;
+            }
+        }
+        return smallest;
+    }
+
+    private static int score(String[] entry, String q) {
+        String name = entry[0];
+        String username = entry[1];
+        if (name.equals(q)) return 6;
+        if (name.startsWith(q)) return 5;
+        if (username.equals(q)) return 4;
+        if (username.startsWith(q)) return 3;
+        if (name.contains(q)) return 2;
+        if (username.contains(q)) return 1;
+        return 0;
+    }
+
+    /**
+     * A candidate result; natural order is best match first
+     */
+    private static class Match implements Comparable<Match> {
+        final String name;
+        final int score;
+
+        Match(String name, int score) {
+            this.name = name;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            return compare(name, score, other.name, other.score);
+        }
+
+        boolean isBeatenBy(String otherName, int otherScore) {
+            return compare(otherName, otherScore, name, score) < 0;
+        }
+
+        private static int compare(String name, int score, String otherName, int otherScore) {
+            if (score != otherScore) return Integer.compare(otherScore, score);
+            if (name.length() != otherName.length()) return Integer.compare(name.length(), otherName.length());
+            return name.compareTo(otherName);
+        }
+    }
+
+    private static void removePosting(Map<String, Set<String>> index, String key, String accountName) {
+        Set<String> names = index.get(key);
+        if (names != null) {
+            names.remove(accountName);
+            if (names.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import java.io.FileInputStream;
+import java.util.Properties;
+
+/**
+ * Read-only access to the settings in config.properties.
+ * The file is read once; missing keys fall back to the supplied defaults.
+ *
+ * References:
+ * - Properties: https://docs.oracle.com/javase/8/docs/api/java/util/Properties.html
+ */
+public class AppConfig {
+    private static final String CONFIG_FILE = "config.properties";
+    private static final Properties props = new Properties();
+
+    static {
+        try (FileInputStream in = new FileInputStream(CONFIG_FILE)) {
+            props.load(in);
+        } catch (Exception e) {
+            // No config file means every setting uses its default
+        }
+    }
+
+    /**
+     * Returns a setting as a string
+     * @param key The property name
+     * @param defaultValue Value used when the key is missing or blank
+     * @return The configured value
+     */
+    public static String get(String key, String defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Returns a setting as an int
+     * @param key The property name
+     * @param defaultValue Value used when the key is missing or not a number
+     * @return The configured value
+     */
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns a setting as a boolean ("true"/"false")
+     * @param key The property name
+     * @param defaultValue Value used when the key is missing
+     * @return The configured value
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+}
@@ -5,22 +5,44 @@
  * References:
  * User Authentication: https://www.baeldung.com/java-authentication-frameworks
  * File-based User Storage: https://stackoverflow.com/questions/19285636/user-authentication-storing-password
+ * Indexed storage: see UserStore
+ * Lock striping: https://www.baeldung.com/java-lock-stripping
  */
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.function.Consumer;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AuthenticationSystem {
     private static final int MAX_LOGIN_ATTEMPTS = 3;
     private static final String USERS_FILE = "users.txt";
+    private static final String USERS_INDEX_FILE = "users.idx";
+    private static final int LOCK_STRIPES = 64;
     private UserProfile currentUser;
-    private Map<String, UserProfile> users;
+    private UserStore users;
+    private final PasswordHasher hasher = PasswordHasher.fromConfig();
+    private final LoginThrottle throttle = LoginThrottle.fromConfig();
+    // Profiles already read from the store; entries are replaced, never modified
+    private final ConcurrentHashMap<String, UserProfile> profiles = new ConcurrentHashMap<>();
+    // Serializes check-then-write per username without one global lock
+    private final Object[] userLocks = new Object[LOCK_STRIPES];
+    // Checked against when a username does not exist, so both cases take as long
+    private volatile String unknownUserHash;
     
     public AuthenticationSystem() {
-        users = new HashMap<>();
-        loadUsers();
+        for (int i = 0; i < userLocks.length; i++) {
+            userLocks[i] = new Object();
+        }
+        try {
+            users = new UserStore(new File(USERS_FILE), new File(USERS_INDEX_FILE),
+                AppConfig.getInt("USERS_COMPACT_THRESHOLD", 1000));
+        } catch (IOException e) {
+            System.out.println("Error opening user store: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+        }
     }
     
     public boolean authenticate() {
@@ -57,8 +79,14 @@ public class AuthenticationSystem {
         System.out.print("Enter password: ");
         String password = scanner.nextLine();
         
-        UserProfile user = users.get(username);
-        if (user != null && user.getPassword().equals(password)) {
+        long locked = throttle.lockoutRemaining(username);
+        if (locked > 0) {
+            System.out.println("Too many failed attempts. Try again in " + (locked + 999) / 1000 + " seconds.");
+            return false;
+        }
+        
+        UserProfile user = verify(username, password);
+        if (user != null) {
             currentUser = user;
             System.out.println("Login successful! Welcome " + user.getFirstName() + "!");
             return true;
@@ -68,6 +96,162 @@ public class AuthenticationSystem {
         return false;
     }
     
+    /**
+     * Checks a username and password without prompting, for sessions that do
+     * not use the console (see VaultServer). Safe to call from many threads.
+     * Failures count towards the username's lockout; a locked-out username is
+     * rejected before any hashing is done.
+     * @return The user's profile, or null if the credentials do not match
+     */
+    public UserProfile verify(String username, String password) {
+        if (throttle.lockoutRemaining(username) > 0) {
+            return null;
+        }
+        UserProfile user = findUser(username);
+        if (user == null) {
+            hasher.verify(password, unknownUserHash());
+            throttle.recordFailure(username);
+            return null;
+        }
+        if (!hasher.verify(password, user.getPassword())) {
+            throttle.recordFailure(username);
+            return null;
+        }
+        throttle.recordSuccess(username);
+        
+        // Upgrade plaintext or old-cost hashes now that the password is known
+        if (hasher.needsRehash(user.getPassword())) {
+            String rehashed = hasher.hash(password);
+            synchronized (lockFor(username)) {
+                UserProfile latest = findUser(username);
+                // Skip if another session changed the profile meanwhile
+                if (latest != null && latest.getPassword().equals(user.getPassword())) {
+                    user = new UserProfile(username, rehashed, latest.getFirstName(), latest.getLastName(), latest.getPasswordHint());
+                    try {
+                        saveUser(user);
+                        if (Diagnostics.isInfoEnabled()) {
+                            Diagnostics.info("Rehashed password for {} at {} iterations", username, hasher.getIterations());
+                        }
+                    } catch (IOException e) {
+                        Diagnostics.warn("Could not save rehashed password: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+        return user;
+    }
+    
+    /**
+     * @return Milliseconds until the username may try to log in again, or 0
+     */
+    public long lockoutRemaining(String username) {
+        return throttle.lockoutRemaining(username);
+    }
+    
+    /**
+     * Registers a user without prompting. Safe to call from many threads; two
+     * registrations of the same username cannot both succeed.
+     * @param password The plaintext password; only its hash is stored
+     * @return false if the username is taken
+     * @throws IOException If the profile cannot be saved
+     */
+    public boolean registerUser(String username, String password, String firstName, String lastName, String passwordHint) throws IOException {
+        if (users == null) {
+            throw new IOException("user store is not available");
+        }
+        // Hash outside the lock; it is by far the slowest step
+        String hash = hasher.hash(password);
+        synchronized (lockFor(username)) {
+            if (findUser(username) != null) {
+                return false;
+            }
+            saveUser(new UserProfile(username, hash, firstName, lastName, passwordHint));
+            return true;
+        }
+    }
+    
+    /**
+     * @return true if at least one user is registered
+     */
+    public boolean hasUsers() {
+        return users != null && users.size() > 0;
+    }
+    
+    /**
+     * Hands every registered user's profile, password hash included, to the sink
+     * @return Number of users
+     * @throws IOException If the user store cannot be read
+     */
+    public int forEachUser(Consumer<UserProfile> sink) throws IOException {
+        if (users == null) {
+            throw new IOException("user store is not available");
+        }
+        return users.forEach(sink);
+    }
+    
+    /**
+     * Adds profiles from a backup as they are, keeping their password hashes.
+     * Usernames that are already registered are left alone. Meant for a restore
+     * before the vault is in use: a registration of the same username running at
+     * the same time is not guarded against.
+     * @return Number of users added
+     * @throws IOException If the profiles cannot be saved
+     */
+    public int restoreUsers(List<UserProfile> restored) throws IOException {
+        if (users == null) {
+            throw new IOException("user store is not available");
+        }
+        List<UserProfile> added = new ArrayList<>();
+        for (UserProfile user : restored) {
+            if (findUser(user.getUsername()) == null) {
+                added.add(user);
+            }
+        }
+        users.saveAll(added);
+        for (UserProfile user : added) {
+            profiles.put(user.getUsername(), user);
+        }
+        return added.size();
+    }
+    
+    private Object lockFor(String username) {
+        return userLocks[(username.hashCode() & 0x7fffffff) % userLocks.length];
+    }
+    
+    private void saveUser(UserProfile user) throws IOException {
+        users.save(user);
+        profiles.put(user.getUsername(), user);
+    }
+    
+    private String unknownUserHash() {
+        String hash = unknownUserHash;
+        if (hash == null) {
+            // Racing threads may each compute one; any of them will do
+            hash = hasher.hash(PasswordGenerator.generatePassword());
+            unknownUserHash = hash;
+        }
+        return hash;
+    }
+    
+    private UserProfile findUser(String username) {
+        UserProfile cached = profiles.get(username);
+        if (cached != null || users == null) {
+            return cached;
+        }
+        try {
+            UserProfile user = users.find(username);
+            if (user != null) {
+                UserProfile raced = profiles.putIfAbsent(username, user);
+                return raced != null ? raced : user;
+            }
+            return null;
+        } catch (IOException e) {
+            System.out.println("Error reading user store: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            return null;
+        }
+    }
+    
     private void register() {
         Scanner scanner = new Scanner(System.in);
         
@@ -77,7 +261,7 @@ public class AuthenticationSystem {
         while (true) {
             System.out.print("Enter username: ");
             username = scanner.nextLine();
-            if (!users.containsKey(username)) {
+            if (findUser(username) == null) {
                 break;
             }
             System.out.println("Username already exists. Please choose another.");
@@ -86,15 +270,15 @@ public class AuthenticationSystem {
         String password;
         do {
             System.out.println("Password requirements:");
-            System.out.println("- At least 8 characters");
-            System.out.println("- At least 1 capital letter");
-            System.out.println("- At least 1 number");
-            System.out.println("- At least 1 special character");
+            for (String rule : PasswordValidator.standard().describeRules()) {
+                System.out.println("- " + rule);
+            }
             System.out.print("Enter password: ");
             password = scanner.nextLine();
             
             if (!PasswordValidator.isValid(password)) {
-                System.out.println("Password does not meet requirements. Please try again.");
+                System.out.println("Password does not meet requirements ("
+                    + String.join(", ", PasswordValidator.standard().evaluate(password).getReasons()) + "). Please try again.");
             }
         } while (!PasswordValidator.isValid(password));
         
@@ -107,62 +291,17 @@ public class AuthenticationSystem {
         System.out.print("Enter password hint: ");
         String passwordHint = scanner.nextLine();
         
-        UserProfile newUser = new UserProfile(username, password, firstName, lastName, passwordHint);
-        users.put(username, newUser);
-        saveUsers();
-        
-        System.out.println("Registration successful! Please login with your credentials.");
-    }
-    
-    private void loadUsers() {
-        try (BufferedReader reader = new BufferedReader(new FileReader(USERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                try {
-                    // Decrypt the line
-                    String decryptedLine = EncryptionUtil.decryptUser(line);
-                    
-                    // Split the decrypted data
-                    String[] parts = decryptedLine.split(",");
-                    if (parts.length == 5) {
-                        UserProfile user = new UserProfile(
-                            parts[0], // username
-                            parts[1], // password
-                            parts[2], // firstName
-                            parts[3], // lastName
-                            parts[4]  // passwordHint
-                        );
-                        users.put(parts[0], user);
-                    }
-                } catch (Exception e) {
-                    System.out.println("Error decrypting user data: " + e.getMessage());
-                }
-            }
-        } catch (IOException e) {
-            // File doesn't exist yet, that's okay
-        }
-    }
-    
-    private void saveUsers() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(USERS_FILE))) {
-            for (UserProfile user : users.values()) {
-                // Create a string with user data
-                String userData = String.format("%s,%s,%s,%s,%s",
-                    user.getUsername(),
-                    user.getPassword(),
-                    user.getFirstName(),
-                    user.getLastName(),
-                    user.getPasswordHint()
-                );
-                
-                // Encrypt the data
-                String encryptedData = EncryptionUtil.encryptUser(userData);
-                
-                // Write encrypted data to file
-                writer.println(encryptedData);
+        try {
+            if (!registerUser(username, password, firstName, lastName, passwordHint)) {
+                System.out.println("Username already exists. Registration cancelled.");
+                return;
             }
         } catch (IOException e) {
             System.out.println("Error saving users: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            return;
         }
+        
+        System.out.println("Registration successful! Please login with your credentials.");
     }
 } 
\ No newline at end of file
@@ -0,0 +1,224 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Versioned binary vault file (passwords.vault).
+ *
+ * Layout:
+ *   magic "PMVB" (4 bytes), version (int), record count (int)
+ *   version 1, per record: length (int) + AES ciphertext of an AccountCodec record
+ *   version 3, per record: length (int) + AES ciphertext of the index fields
+ *                          (AccountCodec.encodeIndex), then length (int) + the
+ *                          password sealed by EncryptionUtil.encryptField
+ *                          (AES-GCM with a random IV per password)
+ *
+ * Version 3 lets a load decrypt names, usernames and categories up front while
+ * each password stays encrypted inside its Account until getPassword() is
+ * called. Files are always written as version 3; version 1 is still readable,
+ * and its accounts are re-encrypted on the next save.
+ *
+ * Each Account keeps its version 3 record bytes from the last read or write, so a
+ * save only encrypts accounts that changed and copies every other record as-is.
+ *
+ * Compared to passwords.txt there is no Base64 (about a third smaller), no line
+ * splitting, and fields may contain commas. Reading memory-maps the file through a
+ * FileChannel and decrypts each record straight out of the mapping.
+ *
+ * References:
+ * - Memory-mapped files: https://www.baeldung.com/java-mapped-byte-buffer
+ * - FileChannel.map: https://docs.oracle.com/javase/8/docs/api/java/nio/channels/FileChannel.html
+ */
+public class BinaryVault {
+    private static final int MAGIC = 0x504D5642; // "PMVB"
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 12;
+    // Largest window mapped at once; a vault bigger than this is read window by window
+    private static final long MAX_WINDOW = 256L * 1024 * 1024;
+    // AccountCodec reuses its buffer, so parallel encoders need one each
+    private static final ThreadLocal<AccountCodec> CODECS = ThreadLocal.withInitial(AccountCodec::new);
+
+    /**
+     * Writes all accounts to a new vault file, replacing the old one only once
+     * the new file is complete
+     * @param file Destination vault file
+     * @param accounts Accounts to store
+     * @throws IOException If the file cannot be written or a record cannot be encrypted
+     */
+    public static void write(File file, Collection<Account> accounts) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        AccountCodec codec = new AccountCodec();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(accounts.size());
+            int encrypted = 0;
+            for (Account account : accounts) {
+                byte[] stored = account.getStoredRecord();
+                if (stored == null) {
+                    stored = encodeRecord(codec, account);
+                    account.setStoredRecord(stored);
+                    encrypted++;
+                }
+                out.write(stored);
+            }
+            if (Diagnostics.isDebugEnabled()) {
+                Diagnostics.debug("Re-encrypted {} of {} records", encrypted, accounts.size());
+            }
+        } catch (GeneralSecurityException e) {
+            temp.delete();
+            throw new IOException("Could not encrypt record: " + e.getMessage(), e);
+        }
+        FileManager.replaceAtomically(temp, file);
+    }
+
+    /**
+     * Encrypts the records of accounts that have none yet, in parallel, so a later
+     * write only copies them
+     * @param accounts New or changed accounts
+     * @throws IOException If a record cannot be encrypted
+     */
+    public static void encodeAll(Collection<Account> accounts) throws IOException {
+        try {
+            accounts.parallelStream().filter(Account::isDirty).forEach(account -> {
+                try {
+                    account.setStoredRecord(encodeRecord(CODECS.get(), account));
+                } catch (GeneralSecurityException e) {
+                    throw new UncheckedIOException(new IOException("Could not encrypt record: " + e.getMessage(), e));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads every record in the vault, decrypting all fields
+     * @param file The vault file
+     * @param sink Receives each account in file order
+     * @return Number of accounts read
+     * @throws IOException If the file is not a vault, is truncated, or cannot be decrypted
+     */
+    public static int read(File file, Consumer<Account> sink) throws IOException {
+        return read(file, false, sink);
+    }
+
+    /**
+     * Reads every record in the vault
+     * @param file The vault file
+     * @param lazyPasswords If true (and the file is version 3), passwords are left
+     *                      encrypted inside each Account until they are read
+     * @param sink Receives each account in file order
+     * @return Number of accounts read
+     * @throws IOException If the file is not a vault, is truncated, or cannot be decrypted
+     */
+    public static int read(File file, boolean lazyPasswords, Consumer<Account> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedWindow window = new MappedWindow(channel);
+            if (window.size < HEADER_BYTES || window.buffer.getInt() != MAGIC) {
+                throw new IOException("Not a vault file: " + file);
+            }
+            int version = window.buffer.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Unsupported vault version " + version);
+            }
+            int count = window.buffer.getInt();
+
+            for (int i = 0; i < count; i++) {
+                ByteBuffer record = window.nextBlob(i);
+                try {
+                    ByteBuffer plain = EncryptionUtil.decryptBytes(record);
+                    if (version == 1) {
+                        sink.accept(AccountCodec.decode(plain));
+                        continue;
+                    }
+                    String[] fields = AccountCodec.decodeIndex(plain);
+                    ByteBuffer password = window.nextBlob(i);
+                    byte[] stored = storedRecord(record.rewind(), password.duplicate());
+                    byte[] sealed = new byte[password.remaining()];
+                    password.get(sealed);
+                    Account account;
+                    if (lazyPasswords) {
+                        account = Account.withSealedPassword(fields[0], fields[1], sealed, fields[2]);
+                    } else {
+                        account = new Account(fields[0], fields[1], EncryptionUtil.decryptField(sealed), fields[2]);
+                    }
+                    account.setStoredRecord(stored);
+                    sink.accept(account);
+                } catch (GeneralSecurityException | IllegalArgumentException | IllegalStateException e) {
+                    throw new IOException("Unreadable record " + i + ": " + e.getMessage(), e);
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Encrypts one account into a complete version 3 record
+     */
+    private static byte[] encodeRecord(AccountCodec codec, Account account) throws GeneralSecurityException {
+        int length = codec.encodeIndex(account);
+        // encryptBytes reuses its buffer, so the index ciphertext is copied out first
+        ByteBuffer encrypted = EncryptionUtil.encryptBytes(codec.buffer(), 0, length);
+        byte[] index = new byte[encrypted.remaining()];
+        encrypted.get(index);
+        
+        // A password that was never decrypted is written back as-is
+        byte[] sealed = account.getSealedPassword();
+        if (sealed == null) {
+            sealed = EncryptionUtil.encryptField(account.getPassword());
+        }
+        return storedRecord(ByteBuffer.wrap(index), ByteBuffer.wrap(sealed));
+    }
+
+    /**
+     * Joins an index blob and a password blob into record bytes as they appear in the file
+     */
+    private static byte[] storedRecord(ByteBuffer index, ByteBuffer password) {
+        byte[] record = new byte[8 + index.remaining() + password.remaining()];
+        ByteBuffer.wrap(record)
+            .putInt(index.remaining()).put(index)
+            .putInt(password.remaining()).put(password);
+        return record;
+    }
+
+    /**
+     * A read-only mapping of part of the vault that slides forward whenever the
+     * next length-prefixed blob does not fit inside it
+     */
+    private static class MappedWindow {
+        final FileChannel channel;
+        final long size;
+        long start;
+        MappedByteBuffer buffer;
+
+        MappedWindow(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_WINDOW));
+        }
+
+        ByteBuffer nextBlob(int recordIndex) throws IOException {
+            if (buffer.remaining() < 4 || buffer.remaining() < 4 + buffer.getInt(buffer.position())) {
+                start += buffer.position();
+                if (start + 4 > size) {
+                    throw new IOException("Vault truncated after " + recordIndex + " records");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, MAX_WINDOW));
+            }
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                throw new IOException("Vault truncated after " + recordIndex + " records");
+            }
+            ByteBuffer blob = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            return blob;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Offline check of passwords against a local list of breached passwords.
+ *
+ * The corpus is a file of raw 20-byte SHA-1 hashes (of the UTF-8 password) in
+ * ascending order, made from the "ordered by hash" Pwned Passwords download with
+ * "java BreachCorpus import <hashes.txt> <corpus.bin>". It is memory-mapped in
+ * chunks of under 2 GB, so only the pages a lookup touches are read and nothing
+ * is copied onto the heap. SHA-1 hashes are spread evenly, so a lookup guesses
+ * where the hash should be from its first 8 bytes (interpolation search) and
+ * usually lands within a page or two of it, then finishes with a binary search.
+ *
+ * With BREACH_BLOOM_BITS_PER_ENTRY set, a Bloom filter on the heap answers most
+ * misses without touching the file. It is built once by scanning the corpus and
+ * kept next to it as <corpus>.bloom.
+ *
+ * References:
+ * - Pwned Passwords: https://haveibeenpwned.com/Passwords
+ * - Interpolation search: https://en.wikipedia.org/wiki/Interpolation_search
+ * - Bloom filter: https://en.wikipedia.org/wiki/Bloom_filter
+ * - Less hashing, same performance (double hashing): https://www.eecs.harvard.edu/~michaelm/postscripts/rsa2008.pdf
+ * - FileChannel.map: https://docs.oracle.com/en/java/javase/21/docs/api/java.base/java/nio/channels/FileChannel.html
+ */
+public class BreachCorpus {
+    private static final int RECORD = 20;
+    // Whole records per mapped chunk, keeping each chunk under 2 GB
+    private static final int RECORDS_PER_CHUNK = Integer.MAX_VALUE / RECORD;
+    // Below this many records, binary search beats further guessing
+    private static final int BINARY_SEARCH_BELOW = 64;
+    // Guesses before falling back to binary search, should the hashes be unevenly spread
+    private static final int MAX_GUESSES = 8;
+    private static final int BLOOM_MAGIC = 0x504D4246; // "PMBF"
+
+    private static final ThreadLocal<MessageDigest> sha1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static volatile BreachCorpus configured;
+    private static volatile boolean configuredLoaded;
+
+    private final File file;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+    private final long[] bloom;
+    private final int bloomHashes;
+
+    /**
+     * Maps a corpus file
+     * @param file Sorted 20-byte SHA-1 records
+     * @param bloomBitsPerEntry Bloom filter size, or 0 for none
+     */
+    public BreachCorpus(File file, int bloomBitsPerEntry) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % RECORD != 0) {
+                throw new IOException(file + " is not a breach corpus (length is not a multiple of " + RECORD + ")");
+            }
+            size = length / RECORD;
+            int count = (int) ((size + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK);
+            chunks = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i * RECORDS_PER_CHUNK * RECORD;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length - start, (long) RECORDS_PER_CHUNK * RECORD));
+            }
+        }
+        if (bloomBitsPerEntry > 0 && size > 0) {
+            bloomHashes = Math.max(1, (int) Math.round(bloomBitsPerEntry * Math.log(2)));
+            bloom = loadOrBuildBloom(bloomBitsPerEntry);
+        } else {
+            bloomHashes = 0;
+            bloom = null;
+        }
+        if (Diagnostics.isInfoEnabled()) {
+            Diagnostics.info("Opened breach corpus with {} hashes{}", size, bloom == null ? "" : " and a Bloom filter");
+        }
+    }
+
+    /**
+     * @return The corpus named by BREACH_CORPUS, or null if none is configured or it cannot be opened
+     */
+    public static BreachCorpus configured() {
+        if (!configuredLoaded) {
+            synchronized (BreachCorpus.class) {
+                if (!configuredLoaded) {
+                    String path = AppConfig.get("BREACH_CORPUS", "");
+                    if (!path.isEmpty()) {
+                        try {
+                            configured = new BreachCorpus(new File(path), AppConfig.getInt("BREACH_BLOOM_BITS_PER_ENTRY", 0));
+                        } catch (IOException e) {
+                            System.out.println("Error opening breach corpus: " + e.getMessage());
+                            Diagnostics.stackTrace(e);
+                        }
+                    }
+                    configuredLoaded = true;
+                }
+            }
+        }
+        return configured;
+    }
+
+    /**
+     * @return Number of hashes in the corpus
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if the password is in the corpus
+     */
+    public boolean contains(String password) {
+        MessageDigest digest = sha1.get();
+        byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        return containsHash(hash);
+    }
+
+    /**
+     * @return true if the first length characters of the array are a password in the corpus
+     */
+    public boolean contains(char[] password, int length) {
+        MessageDigest digest = sha1.get();
+        for (int i = 0; i < length; i++) {
+            char c = password[i];
+            if (c >= 0x80) {
+                // Not ASCII; let String do the UTF-8 encoding
+                digest.reset();
+                return contains(new String(password, 0, length));
+            }
+            digest.update((byte) c);
+        }
+        return containsHash(digest.digest());
+    }
+
+    /**
+     * @param hash A 20-byte SHA-1 hash
+     * @return true if the hash is in the corpus
+     */
+    public boolean containsHash(byte[] hash) {
+        ByteBuffer key = ByteBuffer.wrap(hash);
+        long high = key.getLong(0);
+        long middle = key.getLong(8);
+        int low = key.getInt(16);
+        if (bloom != null && !bloomMightContain(high, middle)) {
+            return false;
+        }
+        long lo = 0;
+        long hi = size - 1;
+        for (int guesses = 0; hi - lo >= BINARY_SEARCH_BELOW && guesses < MAX_GUESSES; guesses++) {
+            long loKey = prefix(lo);
+            long hiKey = prefix(hi);
+            if (Long.compareUnsigned(high, loKey) < 0 || Long.compareUnsigned(high, hiKey) > 0) {
+                return false;
+            }
+            // Guess the position from where the hash falls between the ends of the range
+            double span = unsigned(hiKey) - unsigned(loKey);
+            double fraction = span <= 0 ? 0.5 : (unsigned(high) - unsigned(loKey)) / span;
+            long guess = lo + (long) (fraction * (hi - lo));
+            guess = Math.max(lo, Math.min(hi, guess));
+            int cmp = compare(guess, high, middle, low);
+            if (cmp == 0) {
+                return true;
+            }
+            if (cmp < 0) {
+                lo = guess + 1;
+            } else {
+                hi = guess - 1;
+            }
+        }
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, high, middle, low);
+            if (cmp == 0) {
+                return true;
+            }
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return false;
+    }
+
+    private long prefix(long record) {
+        return chunks[(int) (record / RECORDS_PER_CHUNK)].getLong((int) (record % RECORDS_PER_CHUNK) * RECORD);
+    }
+
+    /**
+     * Compares a record with the hash, as unsigned bytes
+     */
+    private int compare(long record, long high, long middle, int low) {
+        MappedByteBuffer chunk = chunks[(int) (record / RECORDS_PER_CHUNK)];
+        int offset = (int) (record % RECORDS_PER_CHUNK) * RECORD;
+        int cmp = Long.compareUnsigned(chunk.getLong(offset), high);
+        if (cmp == 0) {
+            cmp = Long.compareUnsigned(chunk.getLong(offset + 8), middle);
+        }
+        if (cmp == 0) {
+            cmp = Integer.compareUnsigned(chunk.getInt(offset + 16), low);
+        }
+        return cmp;
+    }
+
+    private static double unsigned(long value) {
+        return (value >>> 1) * 2.0;
+    }
+
+    private boolean bloomMightContain(long h1, long h2) {
+        long bits = (long) bloom.length * 64;
+        for (int i = 0; i < bloomHashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            if ((bloom[(int) (bit >>> 6)] & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads <corpus>.bloom if it was built for this corpus and size, otherwise
+     * builds the filter by scanning the corpus in parallel and saves it
+     */
+    private long[] loadOrBuildBloom(int bitsPerEntry) throws IOException {
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (size * bitsPerEntry + 63) / 64);
+        File saved = new File(file.getPath() + ".bloom");
+        if (saved.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(saved), 1 << 20))) {
+                if (in.readInt() == BLOOM_MAGIC && in.readLong() == size && in.readLong() == file.lastModified()
+                        && in.readInt() == bloomHashes && in.readInt() == words) {
+                    long[] filter = new long[words];
+                    for (int i = 0; i < words; i++) {
+                        filter[i] = in.readLong();
+                    }
+                    return filter;
+                }
+            } catch (IOException e) {
+                Diagnostics.warn("Rebuilding unreadable Bloom filter: {}", e.getMessage());
+            }
+        }
+
+        long start = System.nanoTime();
+        AtomicLongArray filter = new AtomicLongArray(words);
+        long bits = (long) words * 64;
+        IntStream.range(0, chunks.length).parallel().forEach(c -> {
+            // Split each chunk further so every core has work
+            ByteBuffer chunk = chunks[c].duplicate();
+            int records = chunk.capacity() / RECORD;
+            IntStream.range(0, 64).parallel().forEach(part -> {
+                int from = (int) ((long) records * part / 64);
+                int to = (int) ((long) records * (part + 1) / 64);
+                for (int r = from; r < to; r++) {
+                    long h1 = chunk.getLong(r * RECORD);
+                    long h2 = chunk.getLong(r * RECORD + 8);
+                    for (int i = 0; i < bloomHashes; i++) {
+                        long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+                        int word = (int) (bit >>> 6);
+                        long mask = 1L << bit;
+                        if ((filter.get(word) & mask) == 0) {
+                            filter.getAndAccumulate(word, mask, (value, add) -> value | add);
+                        }
+                    }
+                }
+            });
+        });
+        long[] result = new long[words];
+        for (int i = 0; i < words; i++) {
+            result[i] = filter.get(i);
+        }
+        if (Diagnostics.isInfoEnabled()) {
+            Diagnostics.info("Built breach Bloom filter in {} ms", (System.nanoTime() - start) / 1_000_000);
+        }
+
+        File temp = new File(saved.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 20))) {
+            out.writeInt(BLOOM_MAGIC);
+            out.writeLong(size);
+            out.writeLong(file.lastModified());
+            out.writeInt(bloomHashes);
+            out.writeInt(words);
+            for (long word : result) {
+                out.writeLong(word);
+            }
+        }
+        FileManager.replaceAtomically(temp, saved);
+        return result;
+    }
+
+    /**
+     * Converts a Pwned Passwords "ordered by hash" text file (lines of
+     * "HEXSHA1:count") into a corpus file
+     * Usage: java BreachCorpus import <hashes.txt> <corpus.bin>
+     */
+    public static void main(String[] args) {
+        if (args.length != 3 || !args[0].equals("import")) {
+            System.out.println("Usage: java BreachCorpus import <hashes.txt> <corpus.bin>");
+            return;
+        }
+        File target = new File(args[2]);
+        File temp = new File(args[2] + ".tmp");
+        long start = System.nanoTime();
+        long count = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(args[1]), StandardCharsets.US_ASCII), 1 << 20);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 1 << 20)) {
+            byte[] previous = new byte[RECORD];
+            byte[] record = new byte[RECORD];
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.length() < 40 || (line.length() > 40 && line.charAt(40) != ':')) {
+                    throw new IOException("line " + (count + 1) + " is not a SHA-1 hash");
+                }
+                for (int i = 0; i < RECORD; i++) {
+                    int hi = Character.digit(line.charAt(2 * i), 16);
+                    int lo = Character.digit(line.charAt(2 * i + 1), 16);
+                    if (hi < 0 || lo < 0) {
+                        throw new IOException("line " + (count + 1) + " is not a SHA-1 hash");
+                    }
+                    record[i] = (byte) (hi << 4 | lo);
+                }
+                if (count > 0 && Arrays.compareUnsigned(previous, record) >= 0) {
+                    throw new IOException("line " + (count + 1) + " is out of order; use the file ordered by hash");
+                }
+                out.write(record);
+                byte[] swap = previous;
+                previous = record;
+                record = swap;
+                count++;
+            }
+        } catch (IOException e) {
+            System.out.println("Error importing breach corpus: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            temp.delete();
+            return;
+        }
+        try {
+            FileManager.replaceAtomically(temp, target);
+        } catch (IOException e) {
+            System.out.println("Error importing breach corpus: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            return;
+        }
+        System.out.printf("Imported %d hashes in %.1f s%n", count, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,367 @@
+import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imports accounts from the CSV files other password managers export.
+ *
+ * The header row decides which column is which, so the usual layouts work
+ * without options: Bitwarden (folder, name, login_uri, login_username,
+ * login_password), LastPass (url, username, password, name, grouping), 1Password
+ * (Title, Url, Username, Password), KeePass/KeePassXC (Group, Title, Username,
+ * Password, URL), Chrome and Edge (name, url, username, password) and Firefox (url,
+ * username, password; the account is named after the site). Other columns such
+ * as notes and TOTP secrets are ignored. Quoting follows RFC 4180: fields may be
+ * quoted, contain commas and line breaks, and escape a quote by doubling it.
+ *
+ * The file is read as a stream, IMPORT_BATCH_SIZE rows at a time. Each batch is
+ * checked against the vault's name index, added to it, and then encrypted in
+ * parallel into the records the vault stores, so memory use beyond the vault
+ * itself stays at one batch. Nothing is written until the last batch is in; then
+ * the vault is saved once.
+ *
+ * References:
+ * - RFC 4180 (CSV): https://www.rfc-editor.org/rfc/rfc4180
+ * - Bitwarden CSV format: https://bitwarden.com/help/condition-bitwarden-import/
+ * - Parallel streams: https://docs.oracle.com/javase/tutorial/collections/streams/parallelism.html
+ */
+public class CsvImporter {
+    public static final String DEFAULT_CATEGORY = "Imported";
+    // Problems listed in the report; any more are only counted
+    private static final int MAX_LISTED = 100;
+
+    // Header names for each field, best first, compared without case, spaces or punctuation
+    private static final String[] NAME_COLUMNS = {"name", "title", "accountname", "account"};
+    private static final String[] URL_COLUMNS = {"url", "loginuri", "website", "uri"};
+    private static final String[] USERNAME_COLUMNS = {"username", "loginusername", "login", "user", "email"};
+    private static final String[] PASSWORD_COLUMNS = {"password", "loginpassword"};
+    private static final String[] CATEGORY_COLUMNS = {"category", "folder", "grouping", "group"};
+
+    /**
+     * The outcome of an import
+     */
+    public static class Report {
+        private int rows;
+        private int added;
+        private int unchanged;
+        private int conflicts;
+        private int skipped;
+        private final List<String> problems = new ArrayList<>();
+        private long elapsedMillis;
+
+        /** @return Data rows read, not counting the header */
+        public int getRows() {
+            return rows;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        /** @return Rows already in the vault exactly as exported */
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        /** @return Rows not added because a different account has the name */
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        /** @return Rows that are not logins or cannot be stored */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /** @return Why rows were skipped or not added, up to the first 100 */
+        public List<String> getProblems() {
+            return problems;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        private void note(String problem) {
+            if (problems.size() < MAX_LISTED) {
+                problems.add(problem);
+            }
+        }
+    }
+
+    /**
+     * Imports a CSV export into the vault and saves it
+     * @param accountManager The vault to import into
+     * @param file The CSV file, UTF-8
+     * @param defaultCategory Category for rows without a folder or group
+     * @return What was imported and what was not
+     * @throws IOException If the file cannot be read, has no recognisable header,
+     *         or a record cannot be encrypted. Rows already read are kept and saved.
+     */
+    public static Report importFile(AccountManager accountManager, File file, String defaultCategory) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return importCsv(accountManager, reader, defaultCategory);
+        }
+    }
+
+    /**
+     * Imports CSV text into the vault and saves it
+     * @see #importFile(AccountManager, File, String)
+     */
+    public static Report importCsv(AccountManager accountManager, Reader reader, String defaultCategory) throws IOException {
+        if (!accountManager.isWritable()) {
+            throw new IOException("the vault could not be read at startup, so nothing can be added to it");
+        }
+        long start = System.nanoTime();
+        String category = defaultCategory == null || defaultCategory.trim().isEmpty() ? DEFAULT_CATEGORY : defaultCategory.trim();
+        int batchSize = Math.max(1, AppConfig.getInt("IMPORT_BATCH_SIZE", 1000));
+        FileManager fileManager = new FileManager();
+        CsvReader csv = new CsvReader(reader);
+
+        List<String> header = csv.next();
+        if (header == null) {
+            throw new IOException("the file is empty");
+        }
+        Columns columns = new Columns(header);
+
+        Report report = new Report();
+        List<Account> batch = new ArrayList<>(batchSize);
+        try {
+            List<String> row;
+            while ((row = csv.next()) != null) {
+                if (row.size() == 1 && row.get(0).trim().isEmpty()) {
+                    continue;
+                }
+                report.rows++;
+                Account account = columns.toAccount(row, category);
+                if (account == null) {
+                    report.skipped++;
+                    report.note("Row " + csv.getRecord() + ": no name, site or password (not a login?)");
+                } else {
+                    batch.add(account);
+                }
+                if (batch.size() == batchSize) {
+                    importBatch(accountManager, fileManager, batch, report);
+                }
+            }
+            importBatch(accountManager, fileManager, batch, report);
+        } finally {
+            if (report.added > 0) {
+                accountManager.commitImport();
+            }
+            report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            if (Diagnostics.isInfoEnabled()) {
+                Diagnostics.info("Imported {} of {} rows", report.added, report.rows);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Adds the batch to the vault, encrypts the new accounts and empties the batch
+     */
+    private static void importBatch(AccountManager accountManager, FileManager fileManager,
+                                       List<Account> batch, Report report) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Account> conflicts = new ArrayList<>();
+        List<Account> unstorable = new ArrayList<>();
+        List<Account> added = accountManager.importAccounts(batch, conflicts, unstorable);
+        report.added += added.size();
+        report.conflicts += conflicts.size();
+        report.skipped += unstorable.size();
+        report.unchanged += batch.size() - added.size() - conflicts.size() - unstorable.size();
+        for (Account account : conflicts) {
+            report.note(account.getAccountName() + ": already in the vault with different details; not imported");
+        }
+        for (Account account : unstorable) {
+            report.note(account.getAccountName() + ": contains a comma, which the text vault cannot store; use VAULT_FORMAT=binary");
+        }
+        batch.clear();
+        fileManager.encodeAll(added);
+    }
+
+    /**
+     * Where each field is in a row, from the header
+     */
+    private static class Columns {
+        final int name;
+        final int url;
+        final int username;
+        final int password;
+        final int category;
+
+        Columns(List<String> header) throws IOException {
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                positions.putIfAbsent(normalize(header.get(i)), i);
+            }
+            name = find(positions, NAME_COLUMNS);
+            url = find(positions, URL_COLUMNS);
+            username = find(positions, USERNAME_COLUMNS);
+            password = find(positions, PASSWORD_COLUMNS);
+            category = find(positions, CATEGORY_COLUMNS);
+            if (password < 0 || (name < 0 && url < 0)) {
+                throw new IOException("no name/url and password columns in the header " + header
+                    + "; expected an export with a header row, e.g. name,url,username,password");
+            }
+        }
+
+        /**
+         * @return The account in the row, or null if it has no password or nothing to name it by
+         */
+        Account toAccount(List<String> row, String defaultCategory) {
+            String pass = field(row, password);
+            String accountName = field(row, name).trim();
+            if (accountName.isEmpty()) {
+                accountName = siteName(field(row, url).trim());
+            }
+            if (pass.isEmpty() || accountName.isEmpty()) {
+                return null;
+            }
+            String group = field(row, category).trim();
+            return new Account(accountName, field(row, username).trim(), pass, group.isEmpty() ? defaultCategory : group);
+        }
+
+        private static int find(Map<String, Integer> positions, String[] names) {
+            for (String name : names) {
+                Integer position = positions.get(name);
+                if (position != null) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        private static String field(List<String> row, int column) {
+            return column >= 0 && column < row.size() ? row.get(column) : "";
+        }
+
+        private static String normalize(String header) {
+            StringBuilder normalized = new StringBuilder(header.length());
+            for (int i = 0; i < header.length(); i++) {
+                char c = header.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    normalized.append(Character.toLowerCase(c));
+                }
+            }
+            return normalized.toString();
+        }
+
+        /**
+         * @return The host of a URL without "www.", or the text as given if it is not a URL
+         */
+        private static String siteName(String url) {
+            try {
+                String host = URI.create(url).getHost();
+                if (host != null) {
+                    return host.startsWith("www.") ? host.substring(4) : host;
+                }
+            } catch (IllegalArgumentException e) {
+                // Not a URL; use it as it is
+            }
+            return url;
+        }
+    }
+
+    /**
+     * Reads RFC 4180 records one at a time from a character stream
+     */
+    private static class CsvReader {
+        private final Reader in;
+        private final char[] buffer = new char[64 * 1024];
+        private int position;
+        private int limit;
+        private final StringBuilder field = new StringBuilder();
+        private int record;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * @return The next record's fields, or null at the end of the input
+         * @throws IOException If the input ends inside a quoted field
+         */
+        List<String> next() throws IOException {
+            int c = read();
+            if (record == 0 && c == '\uFEFF') {
+                // Byte order mark, as Excel and some exporters write
+                c = read();
+            }
+            if (c < 0) {
+                return null;
+            }
+            record++;
+            List<String> fields = new ArrayList<>();
+            while (true) {
+                field.setLength(0);
+                if (c == '"') {
+                    while (true) {
+                        c = read();
+                        if (c < 0) {
+                            throw new IOException("row " + record + " ends inside a quoted field");
+                        }
+                        if (c == '"') {
+                            c = read();
+                            if (c != '"') {
+                                break;
+                            }
+                        }
+                        field.append((char) c);
+                    }
+                }
+                // Unquoted text, or anything between a closing quote and the next comma, is kept as it is
+                while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+                    field.append((char) c);
+                    c = read();
+                }
+                fields.add(field.toString());
+                if (c == ',') {
+                    c = read();
+                    continue;
+                }
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                return fields;
+            }
+        }
+
+        /**
+         * @return Number of the last record returned, counting the header as 1
+         */
+        int getRecord() {
+            return record;
+        }
+
+        private int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position++];
+        }
+
+        private int peek() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return buffer[position];
+        }
+
+        private boolean fill() throws IOException {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit < 0) {
+                limit = 0;
+                return false;
+            }
+            return true;
+        }
+    }
+}
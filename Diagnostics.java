@@ -0,0 +1,202 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Leveled diagnostic output for the password manager.
+ * Replaces the old "Debug -" println tracing.
+ *
+ * A call for a disabled level returns after a single comparison: the message
+ * is only formatted when the level is enabled, and the fixed-arity overloads
+ * avoid varargs arrays. Callers passing primitives (which would be boxed)
+ * should guard with isInfoEnabled(), isDebugEnabled() or isTraceEnabled().
+ *
+ * Messages use {} placeholders. A {secret} placeholder prints only the
+ * argument's length, so plaintext and ciphertext never reach the log.
+ *
+ * Configured in config.properties:
+ *   LOG_LEVEL  = OFF, ERROR, WARN, INFO, DEBUG or TRACE (default WARN)
+ *   LOG_TARGET = stderr, stdout or a file path (default stderr)
+ *
+ * References:
+ * - Logging levels: https://www.baeldung.com/java-logging-intro
+ * - Parameterized messages: https://www.slf4j.org/faq.html#logging_performance
+ */
+public class Diagnostics {
+    public enum Level { OFF, ERROR, WARN, INFO, DEBUG, TRACE }
+
+    private static final String SECRET = "{secret}";
+
+    private static volatile int threshold;
+    private static volatile PrintStream out;
+
+    static {
+        Level level;
+        try {
+            level = Level.valueOf(AppConfig.get("LOG_LEVEL", "WARN").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            level = Level.WARN;
+        }
+        threshold = level.ordinal();
+        out = openTarget(AppConfig.get("LOG_TARGET", "stderr"));
+    }
+
+    /**
+     * Changes the active level at runtime
+     * @param level The most detailed level to print
+     */
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    /**
+     * Redirects output, e.g. to a file
+     * @param target The stream to print to
+     */
+    public static void setTarget(PrintStream target) {
+        out = target;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() <= threshold;
+    }
+
+    public static boolean isInfoEnabled() {
+        return Level.INFO.ordinal() <= threshold;
+    }
+
+    public static boolean isDebugEnabled() {
+        return Level.DEBUG.ordinal() <= threshold;
+    }
+
+    public static boolean isTraceEnabled() {
+        return Level.TRACE.ordinal() <= threshold;
+    }
+
+    public static void error(String message, Throwable error) {
+        if (Level.ERROR.ordinal() <= threshold) {
+            print(Level.ERROR, message + ": " + error);
+            stackTrace(error);
+        }
+    }
+
+    /**
+     * Prints a stack trace at DEBUG level, for errors already reported to the user
+     * @param error The exception to trace
+     */
+    public static void stackTrace(Throwable error) {
+        if (isDebugEnabled()) {
+            PrintStream target = out;
+            synchronized (target) {
+                error.printStackTrace(target);
+            }
+        }
+    }
+
+    public static void error(String message) {
+        if (Level.ERROR.ordinal() <= threshold) print(Level.ERROR, message);
+    }
+
+    public static void warn(String message) {
+        if (Level.WARN.ordinal() <= threshold) print(Level.WARN, message);
+    }
+
+    public static void warn(String format, Object arg) {
+        if (Level.WARN.ordinal() <= threshold) print(Level.WARN, format(format, arg, null, null));
+    }
+
+    public static void info(String message) {
+        if (Level.INFO.ordinal() <= threshold) print(Level.INFO, message);
+    }
+
+    public static void info(String format, Object arg) {
+        if (Level.INFO.ordinal() <= threshold) print(Level.INFO, format(format, arg, null, null));
+    }
+
+    public static void info(String format, Object arg1, Object arg2) {
+        if (Level.INFO.ordinal() <= threshold) print(Level.INFO, format(format, arg1, arg2, null));
+    }
+
+    public static void debug(String message) {
+        if (Level.DEBUG.ordinal() <= threshold) print(Level.DEBUG, message);
+    }
+
+    public static void debug(String format, Object arg) {
+        if (Level.DEBUG.ordinal() <= threshold) print(Level.DEBUG, format(format, arg, null, null));
+    }
+
+    public static void debug(String format, Object arg1, Object arg2) {
+        if (Level.DEBUG.ordinal() <= threshold) print(Level.DEBUG, format(format, arg1, arg2, null));
+    }
+
+    public static void debug(String format, Object arg1, Object arg2, Object arg3) {
+        if (Level.DEBUG.ordinal() <= threshold) print(Level.DEBUG, format(format, arg1, arg2, arg3));
+    }
+
+    public static void trace(String format, Object arg) {
+        if (Level.TRACE.ordinal() <= threshold) print(Level.TRACE, format(format, arg, null, null));
+    }
+
+    public static void trace(String format, Object arg1, Object arg2) {
+        if (Level.TRACE.ordinal() <= threshold) print(Level.TRACE, format(format, arg1, arg2, null));
+    }
+
+    private static void print(Level level, String message) {
+        PrintStream target = out;
+        synchronized (target) {
+            target.println("[" + level + "] " + message);
+        }
+    }
+
+    /**
+     * Substitutes up to three arguments into {} and {secret} placeholders
+     */
+    private static String format(String format, Object arg1, Object arg2, Object arg3) {
+        StringBuilder sb = new StringBuilder(format.length() + 32);
+        int argIndex = 0;
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i);
+            if (c == '{' && argIndex < 3) {
+                Object arg = argIndex == 0 ? arg1 : argIndex == 1 ? arg2 : arg3;
+                if (format.startsWith("{}", i)) {
+                    sb.append(arg);
+                    argIndex++;
+                    i += 2;
+                    continue;
+                }
+                if (format.startsWith(SECRET, i)) {
+                    sb.append(redact(arg));
+                    argIndex++;
+                    i += SECRET.length();
+                    continue;
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private static String redact(Object value) {
+        if (value == null) {
+            return "<null>";
+        }
+        return "<redacted, " + value.toString().length() + " chars>";
+    }
+
+    private static PrintStream openTarget(String target) {
+        if (target.equalsIgnoreCase("stdout")) {
+            return System.out;
+        }
+        if (target.equalsIgnoreCase("stderr")) {
+            return System.err;
+        }
+        try {
+            return new PrintStream(new FileOutputStream(target, true), true);
+        } catch (IOException e) {
+            System.err.println("Cannot open log file " + target + ", using stderr");
+            return System.err;
+        }
+    }
+}
@@ -1,9 +1,23 @@
 import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Properties;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Utility class for encrypting and decrypting sensitive data using AES encryption.
@@ -13,11 +27,35 @@ import java.io.FileInputStream;
  * - AES Encryption: https://www.baeldung.com/java-aes-encryption-decryption
  * - Base64 Encoding: https://stackoverflow.com/questions/13109588/base64-encoding-in-java
  * - Cipher Usage: https://stackoverflow.com/questions/23561104/how-to-encrypt-and-decrypt-string-with-my-passphrase-in-java-pc
+ * - Online AEAD (STREAM segments): https://eprint.iacr.org/2015/189.pdf
  */
 public class EncryptionUtil {
     private static final String USER_KEY;
     private static final String PASS_KEY;
     private static final String ALGORITHM = "AES";
+    private static final String STREAM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+    // Segmented streams: plaintext per segment, and the random part of each nonce
+    private static final int SEGMENT_BYTES = 64 * 1024;
+    private static final int SEGMENT_PREFIX_BYTES = 7;
+    private static final SecureRandom random = new SecureRandom();
+    private static final SecretKeySpec streamKey;
+    private static final byte[] BASE64_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.ISO_8859_1);
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    // One prepared engine per key and thread
+    private static final ThreadLocal<CipherEngine> userEngine;
+    private static final ThreadLocal<CipherEngine> passEngine;
+    // GCM cipher for single fields; re-initialized with a new IV for every field
+    private static final ThreadLocal<Cipher> fieldCipher = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(STREAM_TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to initialize cipher: " + e.getMessage());
+        }
+    });
     
     // Load keys from configuration file
     static {
@@ -29,6 +67,11 @@ public class EncryptionUtil {
         } catch (Exception e) {
             throw new RuntimeException("Failed to load encryption keys: " + e.getMessage());
         }
+        SecretKeySpec userKey = new SecretKeySpec(USER_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        SecretKeySpec passKey = new SecretKeySpec(PASS_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        userEngine = ThreadLocal.withInitial(() -> new CipherEngine(userKey));
+        passEngine = ThreadLocal.withInitial(() -> new CipherEngine(passKey));
+        streamKey = passKey;
     }
 
     /**
@@ -37,7 +80,7 @@ public class EncryptionUtil {
      * @return The encrypted string in Base64 format
      */
     public static String encrypt(String value) {
-        return encrypt(value, PASS_KEY);
+        return passEngine.get().encrypt(value);
     }
 
     /**
@@ -46,7 +89,7 @@ public class EncryptionUtil {
      * @return The decrypted string
      */
     public static String decrypt(String encrypted) {
-        return decrypt(encrypted, PASS_KEY);
+        return passEngine.get().decrypt(encrypted);
     }
 
     /**
@@ -55,7 +98,7 @@ public class EncryptionUtil {
      * @return The encrypted string in Base64 format
      */
     public static String encryptUser(String value) {
-        return encrypt(value, USER_KEY);
+        return userEngine.get().encrypt(value);
     }
 
     /**
@@ -64,46 +107,487 @@ public class EncryptionUtil {
      * @return The decrypted string
      */
     public static String decryptUser(String encrypted) {
-        return decrypt(encrypted, USER_KEY);
+        return userEngine.get().decrypt(encrypted);
+    }
+
+    /**
+     * Encrypts a batch of password records with one cipher and one set of buffers
+     * @param values The strings to encrypt
+     * @return The encrypted strings in Base64 format, in the same order
+     */
+    public static List<String> encryptAll(List<String> values) {
+        List<String> results = new ArrayList<>(values.size());
+        CipherEngine engine = passEngine.get();
+        for (String value : values) {
+            results.add(engine.encrypt(value));
+        }
+        return results;
     }
 
     /**
-     * Core encryption method using AES algorithm
-     * For more details: https://stackoverflow.com/questions/23561104/how-to-encrypt-and-decrypt-string-with-my-passphrase-in-java-pc
+     * Decrypts a batch of password records with one cipher and one set of buffers
+     * @param encrypted The Base64 encoded encrypted strings
+     * @return The decrypted strings, in the same order
      */
-    private static String encrypt(String value, String secretKey) {
+    public static List<String> decryptAll(List<String> encrypted) {
+        List<String> results = new ArrayList<>(encrypted.size());
+        CipherEngine engine = passEngine.get();
+        for (String value : encrypted) {
+            results.add(engine.decrypt(value));
+        }
+        return results;
+    }
+
+    /**
+     * Encrypts raw bytes with the password key (no Base64), for binary vault records.
+     * The returned buffer belongs to the calling thread and is only valid until
+     * that thread's next EncryptionUtil call.
+     * @param data Plaintext bytes
+     * @param offset Start of the plaintext in data
+     * @param length Number of plaintext bytes
+     * @return Buffer positioned over the ciphertext
+     * @throws GeneralSecurityException If encryption fails
+     */
+    public static ByteBuffer encryptBytes(byte[] data, int offset, int length) throws GeneralSecurityException {
+        return passEngine.get().encryptBytes(data, offset, length);
+    }
+
+    /**
+     * Decrypts raw bytes with the password key (no Base64), for binary vault records.
+     * The input may be a direct or memory-mapped buffer; its position is advanced past the record.
+     * The returned buffer belongs to the calling thread and is only valid until
+     * that thread's next EncryptionUtil call.
+     * @param encrypted Buffer whose remaining bytes are one ciphertext
+     * @return Buffer positioned over the plaintext
+     * @throws GeneralSecurityException If the data is not valid ciphertext for this key
+     */
+    public static ByteBuffer decryptBytes(ByteBuffer encrypted) throws GeneralSecurityException {
+        return passEngine.get().decryptBytes(encrypted);
+    }
+
+    /**
+     * Encrypts a single field (such as a password) for storage as raw bytes.
+     * Unlike encryptBytes this is AES-GCM with a fresh random IV, so equal
+     * values give different ciphertexts and tampering is detected.
+     * @param value The plaintext
+     * @return A new array holding the IV followed by the ciphertext and tag
+     */
+    public static byte[] encryptField(String value) {
         try {
-            SecretKeySpec key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            byte[] encrypted = cipher.doFinal(value.getBytes());
-            String encryptedString = Base64.getEncoder().encodeToString(encrypted);
-            System.out.println("Debug - Encryption successful: " + value + " -> " + encryptedString);
-            return encryptedString;
-        } catch (Exception e) {
-            System.out.println("Error encrypting: " + e.getMessage());
-            e.printStackTrace();
-            return value;
+            byte[] plain = value.getBytes(StandardCharsets.UTF_8);
+            byte[] iv = new byte[GCM_IV_BYTES];
+            random.nextBytes(iv);
+            byte[] result = new byte[GCM_IV_BYTES + plain.length + GCM_TAG_BITS / 8];
+            System.arraycopy(iv, 0, result, 0, GCM_IV_BYTES);
+            Cipher cipher = fieldCipher.get();
+            cipher.init(Cipher.ENCRYPT_MODE, streamKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            cipher.doFinal(plain, 0, plain.length, result, GCM_IV_BYTES);
+            return result;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error encrypting field: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Core decryption method using AES algorithm
-     * For more details: https://stackoverflow.com/questions/23561104/how-to-encrypt-and-decrypt-string-with-my-passphrase-in-java-pc
+     * Decrypts a field produced by encryptField
+     * @param encrypted The IV, ciphertext and tag
+     * @return The plaintext
      */
-    private static String decrypt(String encrypted, String secretKey) {
+    public static String decryptField(byte[] encrypted) {
         try {
-            SecretKeySpec key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, key);
-            byte[] decrypted = cipher.doFinal(Base64.getDecoder().decode(encrypted));
-            String decryptedString = new String(decrypted);
-            System.out.println("Debug - Decryption successful: " + encrypted + " -> " + decryptedString);
-            return decryptedString;
-        } catch (Exception e) {
-            System.out.println("Error decrypting: " + e.getMessage());
-            e.printStackTrace();
-            return encrypted;
+            if (encrypted.length < GCM_IV_BYTES + GCM_TAG_BITS / 8) {
+                throw new GeneralSecurityException("field too short");
+            }
+            Cipher cipher = fieldCipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, streamKey, new GCMParameterSpec(GCM_TAG_BITS, encrypted, 0, GCM_IV_BYTES));
+            byte[] plain = cipher.doFinal(encrypted, GCM_IV_BYTES, encrypted.length - GCM_IV_BYTES);
+            return new String(plain, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error decrypting field: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Wraps an output stream so everything written to it is encrypted as one
+     * AES-GCM message under the password key. A fresh random IV is written to
+     * the underlying stream first. Closing the returned stream writes the
+     * authentication tag.
+     * @param out Destination stream
+     * @param header Bytes already written before the IV (e.g. magic and version);
+     *               they are authenticated, so changing them is detected on read
+     * @return Stream to write plaintext to
+     * @throws IOException If the cipher cannot be set up or the IV cannot be written
+     */
+    public static OutputStream sealedOutputStream(OutputStream out, byte[] header) throws IOException {
+        byte[] iv = new byte[GCM_IV_BYTES];
+        random.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(STREAM_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, streamKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            cipher.updateAAD(header);
+            out.write(iv);
+            return new CipherOutputStream(out, cipher);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot start vault encryption: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens a stream written by sealedOutputStream. The IV is read from the
+     * underlying stream. If the data or header was modified, reading fails with
+     * an IOException once the end of the stream is reached.
+     * @param in Source stream, positioned at the IV
+     * @param header The same header bytes given when the stream was written
+     * @return Stream of decrypted plaintext
+     * @throws IOException If the IV cannot be read or the cipher cannot be set up
+     */
+    public static InputStream sealedInputStream(InputStream in, byte[] header) throws IOException {
+        byte[] iv = new byte[GCM_IV_BYTES];
+        new DataInputStream(in).readFully(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(STREAM_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, streamKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            cipher.updateAAD(header);
+            return new CipherInputStream(in, cipher);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot start vault decryption: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Wraps an output stream so everything written to it is encrypted under the
+     * password key in AES-GCM segments of 64 KB, each with its own tag. Unlike
+     * sealedOutputStream, the reader can verify and release each segment as it
+     * arrives instead of holding everything until the end. Each nonce is a random
+     * prefix, the segment number and a flag marking the last segment, so
+     * segments cannot be reordered, dropped or cut off at the end undetected.
+     * Closing the returned stream writes the last segment.
+     *
+     * Layout after the header: 7-byte nonce prefix, then per segment the
+     * ciphertext length (int) and the ciphertext with its 16-byte tag.
+     * @param out Destination stream
+     * @param header Bytes already written before the prefix; authenticated with every segment
+     * @return Stream to write plaintext to
+     * @throws IOException If the cipher cannot be set up or the prefix cannot be written
+     */
+    public static OutputStream segmentedOutputStream(OutputStream out, byte[] header) throws IOException {
+        byte[] prefix = new byte[SEGMENT_PREFIX_BYTES];
+        random.nextBytes(prefix);
+        out.write(prefix);
+        return new SegmentedOutputStream(out, header, prefix);
+    }
+
+    /**
+     * Opens a stream written by segmentedOutputStream. Each segment is checked
+     * before any of its bytes are returned; a modified, reordered or missing
+     * segment makes the read fail with an IOException at that point.
+     * @param in Source stream, positioned at the nonce prefix
+     * @param header The same header bytes given when the stream was written
+     * @return Stream of verified plaintext
+     * @throws IOException If the prefix cannot be read
+     */
+    public static InputStream segmentedInputStream(InputStream in, byte[] header) throws IOException {
+        byte[] prefix = new byte[SEGMENT_PREFIX_BYTES];
+        new DataInputStream(in).readFully(prefix);
+        return new SegmentedInputStream(in, header, prefix);
+    }
+
+    private static Cipher segmentCipher(int mode, byte[] header, byte[] prefix, int segment, boolean last)
+            throws GeneralSecurityException {
+        byte[] nonce = new byte[GCM_IV_BYTES];
+        System.arraycopy(prefix, 0, nonce, 0, SEGMENT_PREFIX_BYTES);
+        ByteBuffer.wrap(nonce, SEGMENT_PREFIX_BYTES, 5).putInt(segment).put((byte) (last ? 1 : 0));
+        Cipher cipher = Cipher.getInstance(STREAM_TRANSFORMATION);
+        cipher.init(mode, streamKey, new GCMParameterSpec(GCM_TAG_BITS, nonce));
+        cipher.updateAAD(header);
+        return cipher;
+    }
+
+    private static class SegmentedOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] header;
+        private final byte[] prefix;
+        private final byte[] plain = new byte[SEGMENT_BYTES];
+        private final byte[] sealed = new byte[SEGMENT_BYTES + GCM_TAG_BITS / 8];
+        private int filled;
+        private int segment;
+        private boolean closed;
+
+        SegmentedOutputStream(OutputStream out, byte[] header, byte[] prefix) {
+            this.out = new DataOutputStream(out);
+            this.header = header.clone();
+            this.prefix = prefix;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                // A full segment is only sealed once more data arrives, so the
+                // last segment is known to be last when it is sealed
+                if (filled == plain.length) {
+                    seal(false);
+                }
+                int count = Math.min(length, plain.length - filled);
+                System.arraycopy(data, offset, plain, filled, count);
+                filled += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                seal(true);
+            } finally {
+                out.close();
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            if (segment == -1) {
+                throw new IOException("Stream too long to encrypt");
+            }
+            try {
+                int length = segmentCipher(Cipher.ENCRYPT_MODE, header, prefix, segment, last)
+                    .doFinal(plain, 0, filled, sealed, 0);
+                out.writeInt(length);
+                out.write(sealed, 0, length);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Cannot encrypt segment: " + e.getMessage(), e);
+            }
+            segment++;
+            filled = 0;
+        }
+    }
+
+    private static class SegmentedInputStream extends InputStream {
+        private final DataInputStream in;
+        private final byte[] header;
+        private final byte[] prefix;
+        private final byte[] sealed = new byte[SEGMENT_BYTES + GCM_TAG_BITS / 8];
+        private final byte[] plain = new byte[SEGMENT_BYTES];
+        private int position;
+        private int limit;
+        private int segment;
+        private boolean finished;
+        // Length of the segment after the current one, or -1 at the end of the input
+        private int nextLength;
+
+        SegmentedInputStream(InputStream in, byte[] header, byte[] prefix) throws IOException {
+            this.in = new DataInputStream(in);
+            this.header = header.clone();
+            this.prefix = prefix;
+            this.nextLength = readLength();
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (position == limit) {
+                if (!nextSegment()) {
+                    return -1;
+                }
+            }
+            return plain[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position == limit) {
+                if (!nextSegment()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(plain, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean nextSegment() throws IOException {
+            if (finished) {
+                return false;
+            }
+            int length = nextLength;
+            if (length < 0) {
+                throw new IOException("Encrypted stream is truncated after segment " + segment);
+            }
+            if (length < GCM_TAG_BITS / 8 || length > sealed.length) {
+                throw new IOException("Encrypted stream is corrupt at segment " + segment);
+            }
+            try {
+                in.readFully(sealed, 0, length);
+            } catch (EOFException e) {
+                throw new IOException("Encrypted stream is truncated in segment " + segment, e);
+            }
+            nextLength = readLength();
+            // Only the writer's last segment verifies with the flag set, so cutting
+            // the stream at a segment boundary fails here
+            boolean last = nextLength < 0;
+            try {
+                limit = segmentCipher(Cipher.DECRYPT_MODE, header, prefix, segment, last)
+                    .doFinal(sealed, 0, length, plain, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Segment " + segment + " failed authentication (modified, truncated or wrong key)", e);
+            }
+            position = 0;
+            segment++;
+            finished = last;
+            return true;
+        }
+
+        private int readLength() throws IOException {
+            int first = in.read();
+            if (first < 0) {
+                return -1;
+            }
+            int length;
+            try {
+                length = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+            } catch (EOFException e) {
+                throw new IOException("Encrypted stream is truncated after segment " + segment, e);
+            }
+            if (length < 0) {
+                throw new IOException("Encrypted stream is corrupt after segment " + segment);
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Core AES engine: a per-thread pair of initialized ciphers for one key, plus scratch buffers.
+     * Cipher.getInstance and key setup happen once per thread instead of once per record;
+     * with ECB mode doFinal leaves the cipher ready for the next record.
+     * Cipher objects are not thread-safe, which is why each thread gets its own engine.
+     */
+    private static class CipherEngine {
+        private final Cipher encryptCipher;
+        private final Cipher decryptCipher;
+        private byte[] cipherBuffer = new byte[256];
+        private byte[] textBuffer = new byte[384];
+
+        CipherEngine(SecretKeySpec key) {
+            try {
+                encryptCipher = Cipher.getInstance(ALGORITHM);
+                encryptCipher.init(Cipher.ENCRYPT_MODE, key);
+                decryptCipher = Cipher.getInstance(ALGORITHM);
+                decryptCipher.init(Cipher.DECRYPT_MODE, key);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to initialize cipher: " + e.getMessage());
+            }
+        }
+
+        ByteBuffer encryptBytes(byte[] data, int offset, int length) throws GeneralSecurityException {
+            int size = encryptCipher.getOutputSize(length);
+            if (cipherBuffer.length < size) {
+                cipherBuffer = new byte[size * 2];
+            }
+            int written = encryptCipher.doFinal(data, offset, length, cipherBuffer, 0);
+            return ByteBuffer.wrap(cipherBuffer, 0, written);
+        }
+
+        ByteBuffer decryptBytes(ByteBuffer encrypted) throws GeneralSecurityException {
+            int length = encrypted.remaining();
+            int size = decryptCipher.getOutputSize(length);
+            if (textBuffer.length < size) {
+                textBuffer = new byte[size * 2];
+            }
+            if (cipherBuffer.length < length) {
+                cipherBuffer = new byte[length * 2];
+            }
+            // A bulk copy out of a direct/mapped buffer is cheaper than the
+            // provider's ByteBuffer path, which allocates temporary arrays per call
+            encrypted.get(cipherBuffer, 0, length);
+            int plainLength = decryptCipher.doFinal(cipherBuffer, 0, length, textBuffer, 0);
+            return ByteBuffer.wrap(textBuffer, 0, plainLength);
+        }
+
+        String encrypt(String value) {
+            try {
+                byte[] plain = value.getBytes(StandardCharsets.UTF_8);
+                int size = encryptCipher.getOutputSize(plain.length);
+                if (cipherBuffer.length < size) {
+                    cipherBuffer = new byte[size * 2];
+                }
+                int length = encryptCipher.doFinal(plain, 0, plain.length, cipherBuffer, 0);
+                String encryptedString = toBase64(cipherBuffer, length);
+                Diagnostics.trace("Encrypted {secret} -> {secret}", value, encryptedString);
+                return encryptedString;
+            } catch (Exception e) {
+                Diagnostics.error("Error encrypting", e);
+                return value;
+            }
+        }
+
+        String decrypt(String encrypted) {
+            try {
+                byte[] encoded = encrypted.getBytes(StandardCharsets.ISO_8859_1);
+                int size = encoded.length / 4 * 3 + 3;
+                if (cipherBuffer.length < size) {
+                    cipherBuffer = new byte[size * 2];
+                }
+                int length = BASE64_DECODER.decode(encoded, cipherBuffer);
+                if (textBuffer.length < length) {
+                    textBuffer = new byte[length * 2];
+                }
+                int plainLength = decryptCipher.doFinal(cipherBuffer, 0, length, textBuffer, 0);
+                String decryptedString = new String(textBuffer, 0, plainLength, StandardCharsets.UTF_8);
+                Diagnostics.trace("Decrypted {secret} -> {secret}", encrypted, decryptedString);
+                return decryptedString;
+            } catch (Exception e) {
+                Diagnostics.error("Error decrypting", e);
+                return encrypted;
+            }
+        }
+
+        /**
+         * Standard Base64 (with padding) of the first length bytes, written into the
+         * reusable text buffer. java.util.Base64 only encodes whole arrays.
+         */
+        private String toBase64(byte[] data, int length) {
+            int size = (length + 2) / 3 * 4;
+            if (textBuffer.length < size) {
+                textBuffer = new byte[size * 2];
+            }
+            int out = 0;
+            int i = 0;
+            for (; i + 2 < length; i += 3) {
+                int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+                textBuffer[out++] = BASE64_ALPHABET[bits >>> 18];
+                textBuffer[out++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+                textBuffer[out++] = BASE64_ALPHABET[(bits >>> 6) & 0x3f];
+                textBuffer[out++] = BASE64_ALPHABET[bits & 0x3f];
+            }
+            if (i < length) {
+                int bits = (data[i] & 0xff) << 16 | (i + 1 < length ? (data[i + 1] & 0xff) << 8 : 0);
+                textBuffer[out++] = BASE64_ALPHABET[bits >>> 18];
+                textBuffer[out++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+                textBuffer[out++] = i + 1 < length ? BASE64_ALPHABET[(bits >>> 6) & 0x3f] : (byte) '=';
+                textBuffer[out++] = '=';
+            }
+            return new String(textBuffer, 0, out, StandardCharsets.ISO_8859_1);
         }
     }
-} 
\ No newline at end of file
+}
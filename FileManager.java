@@ -1,6 +1,11 @@
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Handles file I/O operations for the password manager.
@@ -9,38 +14,193 @@ import java.util.List;
  * References:
  * PrintWriter: https://docs.oracle.com/javase/8/docs/api/java/io/PrintWriter.html
  * File Writing: https://stackoverflow.com/questions/2885173/how-do-i-create-a-file-and-write-to-it
+ * Atomic file replace: https://stackoverflow.com/questions/1146311/atomic-file-move-in-java
  */
 public class FileManager {
     private static final String FILE_PATH = "passwords.txt";
+    private static final String VAULT_PATH = "passwords.vault";
+    private static final String SEALED_PATH = "passwords.gcm";
+    private final String vaultFormat;
     
-    public void saveData(AccountManager accountManager) {
-        System.out.println("\nDebug - Saving data to file");
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
-            List<String> categories = accountManager.getAllCategories();
-            System.out.println("Debug - Categories to save: " + categories);
+    public FileManager() {
+        this.vaultFormat = AppConfig.get("VAULT_FORMAT", "text").toLowerCase();
+    }
+    
+    /**
+     * Writes the vault in the configured format. Errors are reported to the user.
+     * @return false if the vault could not be written, so the changes exist only in memory
+     */
+    public synchronized boolean saveData(AccountManager accountManager) {
+        if (!accountManager.isWritable()) {
+            Diagnostics.warn("Vault was not readable at startup; skipping save");
+            return false;
+        }
+        if (vaultFormat.equals("binary")) {
+            return saveBinary(accountManager);
+        }
+        if (vaultFormat.equals("stream")) {
+            return saveSealed(accountManager);
+        }
+        if (vaultFormat.equals("sharded")) {
+            return saveSharded(accountManager);
+        }
+        
+        // One consistent copy of the vault, grouped by category
+        List<Account> accounts = accountManager.viewAccounts();
+        if (Diagnostics.isDebugEnabled()) {
+            Diagnostics.debug("Saving {} accounts to {}", accounts.size(), FILE_PATH);
+        }
+        
+        File temp = new File(FILE_PATH + ".tmp");
+        try {
+            // Only accounts changed since the last load or save are encrypted, as one
+            // batch; the rest are copied from the line they were read from
+            List<Account> changed = new ArrayList<>();
+            List<String> records = new ArrayList<>();
+            for (Account account : accounts) {
+                if (account.getStoredLine() == null) {
+                    changed.add(account);
+                    records.add(formatRecord(account));
+                }
+            }
+            List<String> lines = EncryptionUtil.encryptAll(records);
+            for (int i = 0; i < lines.size(); i++) {
+                changed.get(i).setStoredLine(lines.get(i));
+            }
+            if (Diagnostics.isDebugEnabled()) {
+                Diagnostics.debug("Re-encrypted {} of {} records", changed.size(), accounts.size());
+            }
             
-            for (String category : categories) {
-                List<Account> accounts = accountManager.getAccountsByCategory(category);
-                System.out.println("Debug - Saving category '" + category + "' with " + accounts.size() + " accounts");
-                
+            try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(temp), 64 * 1024))) {
                 for (Account account : accounts) {
-                    String accountData = String.format("%s,%s,%s,%s",
-                        account.getAccountName(),
-                        account.getUsername(),
-                        account.getPassword(),
-                        account.getCategory()
-                    );
-                    System.out.println("Debug - Account data before encryption: " + accountData);
-                    
-                    String encryptedData = EncryptionUtil.encrypt(accountData);
-                    System.out.println("Debug - Encrypted data: " + encryptedData);
-                    
-                    writer.println(encryptedData);
+                    writer.println(account.getStoredLine());
+                }
+                if (writer.checkError()) {
+                    throw new IOException("write to " + temp + " failed");
                 }
             }
+            replaceAtomically(temp, new File(FILE_PATH));
+            return true;
         } catch (IOException e) {
             System.out.println("Error saving accounts: " + e.getMessage());
-            e.printStackTrace();
+            Diagnostics.stackTrace(e);
+            return false;
+        }
+    }
+
+    /**
+     * Encrypts each account's record for this vault format ahead of a save, in
+     * parallel, so the save copies the records instead of encrypting them one by
+     * one. The stream format seals the whole file in one pass, so there is nothing
+     * to prepare for it.
+     * @param accounts Accounts that are new or changed since the last save
+     * @throws IOException If a record cannot be encrypted
+     */
+    public void encodeAll(List<Account> accounts) throws IOException {
+        if (vaultFormat.equals("text")) {
+            accounts.parallelStream().forEach(account -> account.setStoredLine(encodeLine(account)));
+        } else if (vaultFormat.equals("binary") || vaultFormat.equals("sharded")) {
+            BinaryVault.encodeAll(accounts);
+        }
+    }
+
+    /**
+     * @return false if this vault format cannot store the account as it is:
+     *         passwords.txt joins the fields with commas, so none may contain one
+     */
+    public boolean canStore(Account account) {
+        if (!vaultFormat.equals("text")) {
+            return true;
+        }
+        return account.getAccountName().indexOf(',') < 0
+            && account.getUsername().indexOf(',') < 0
+            && account.getPassword().indexOf(',') < 0
+            && account.getCategory().indexOf(',') < 0;
+    }
+
+    /**
+     * Encrypts an account as one passwords.txt line
+     */
+    private static String encodeLine(Account account) {
+        return EncryptionUtil.encrypt(formatRecord(account));
+    }
+
+    /**
+     * @return The plaintext passwords.txt record: the four fields joined by commas
+     */
+    private static String formatRecord(Account account) {
+        return String.format("%s,%s,%s,%s",
+            account.getAccountName(),
+            account.getUsername(),
+            account.getPassword(),
+            account.getCategory()
+        );
+    }
+
+    /**
+     * Writes every account to passwords.vault in the binary record format
+     */
+    private boolean saveBinary(AccountManager accountManager) {
+        List<Account> accounts = accountManager.viewAccounts();
+        if (Diagnostics.isDebugEnabled()) {
+            Diagnostics.debug("Saving {} accounts to {}", accounts.size(), VAULT_PATH);
+        }
+        try {
+            BinaryVault.write(new File(VAULT_PATH), accounts);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error saving accounts: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes every account to passwords.gcm in one authenticated AES-GCM pass
+     */
+    private boolean saveSealed(AccountManager accountManager) {
+        List<Account> accounts = accountManager.viewAccounts();
+        if (Diagnostics.isDebugEnabled()) {
+            Diagnostics.debug("Saving {} accounts to {}", accounts.size(), SEALED_PATH);
+        }
+        try {
+            StreamVault.write(new File(SEALED_PATH), accounts);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error saving accounts: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites only the category shards that changed since the last save
+     */
+    private boolean saveSharded(AccountManager accountManager) {
+        Map<String, List<Account>> changed = accountManager.takeDirtyCategories();
+        try {
+            accountManager.getShardedVault().save(changed);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            accountManager.restoreDirtyCategories(changed.keySet());
+            System.out.println("Error saving accounts: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            return false;
+        }
+    }
+
+    /**
+     * Flushes a fully written temporary file to disk, then renames it over the
+     * target. After a crash the target is either the old file or the new one,
+     * never a partial write.
+     * @param temp The completed temporary file
+     * @param target The file to replace
+     * @throws IOException If the sync or rename fails
+     */
+    static void replaceAtomically(File temp, File target) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
         }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
-} 
\ No newline at end of file
+}
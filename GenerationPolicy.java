@@ -0,0 +1,418 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A named, compiled set of rules for generating passwords, so the output fits
+ * what a target system accepts.
+ *
+ * Character policies pick a length uniformly from their range, then a password
+ * uniformly from every string of that length that meets the per-class minimums.
+ * Compiling builds a table of how many completions each (characters left, still
+ * owed) state has, as a fraction of all strings of that length; generation walks
+ * it one character at a time, so nothing is retried or shuffled. Every class
+ * PasswordValidator requires has a minimum of at least 1, the length is at least
+ * the validator's minimum and special characters are ones it accepts, so every
+ * password passes it.
+ *
+ * Passphrase policies join words drawn uniformly from a word list with a special
+ * separator, capitalise each word and add one digit after a random word, which
+ * likewise always passes PasswordValidator.
+ *
+ * The text vault joins fields with commas, so the standard policy and the
+ * default SPECIAL set leave the comma out, and a configured policy may only
+ * use one with VAULT_FORMAT=binary.
+ *
+ * Policies are listed in GENERATION_POLICIES and configured with
+ * POLICY_<name>_<setting> keys (see config.properties.template).
+ *
+ * References:
+ * - Counting constrained strings (dynamic programming): https://en.wikipedia.org/wiki/Dynamic_programming
+ * - Look-alike characters: https://en.wikipedia.org/wiki/Homoglyph
+ * - Diceware passphrases: https://www.eff.org/dice
+ */
+public class GenerationPolicy {
+    public static final int MAX_LENGTH = 1024;
+    private static final PasswordValidator validator = PasswordValidator.standard();
+    private static final String[] CLASS_NAMES = {"UPPER", "LOWER", "DIGIT", "SPECIAL"};
+    private static final int MAX_STATES = 4096;
+    // Every special character the validator accepts except the comma, which passwords.txt cannot hold
+    private static final String STORABLE_SPECIAL = validator.getSpecial().replace(",", "");
+
+    /** Every character class, at least one of each, length 8 to MAX_LENGTH */
+    static final GenerationPolicy STANDARD = new GenerationPolicy("standard", 12, 12, MAX_LENGTH,
+        new int[] {1, 1, 1, 1}, STORABLE_SPECIAL, "");
+
+    private static final ConcurrentHashMap<String, GenerationPolicy> compiled = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int minLength;
+    private final int maxLength;
+
+    // Character policies: upper, lower, digit and special characters
+    private final char[][] classes;
+    private final char[] alphabet;
+    // Each class's share of the whole alphabet
+    private final double[] weights;
+    // State after emitting a character of each class; a state encodes what is still owed
+    private final int[][] next;
+    // completions[r][s]: fraction of strings of r characters that meet what state s still owes
+    private final double[][] completions;
+    private final int start;
+
+    // Passphrase policies
+    private final char[][] words;
+    private final char[] digits;
+    private final int wordCount;
+    private final char separator;
+
+    /**
+     * Compiles a character policy
+     * @param minLength Shortest password (raised to the validator's minimum)
+     * @param maxLength Longest password the table is built for
+     * @param minimums At least this many upper case, lower case, digit and special characters
+     * @param special Special characters to use, a subset of those PasswordValidator accepts
+     * @param exclude Characters never to use
+     */
+    GenerationPolicy(String name, int minLength, int maxLength, int[] minimums, String special, String exclude) {
+        this(name, minLength, maxLength, maxLength, minimums, special, exclude);
+    }
+
+    private GenerationPolicy(String name, int minLength, int maxLength, int tableLength,
+                             int[] minimums, String special, String exclude) {
+        this.name = name;
+        this.minLength = Math.max(minLength, validator.getMinLength());
+        this.maxLength = Math.max(maxLength, this.minLength);
+        if (this.maxLength > MAX_LENGTH) {
+            throw new IllegalArgumentException("length may be at most " + MAX_LENGTH);
+        }
+        for (char c : special.toCharArray()) {
+            if (validator.getSpecial().indexOf(c) < 0) {
+                throw new IllegalArgumentException("special characters must be among " + validator.getSpecial());
+            }
+        }
+        classes = new char[][] {
+            characters("ABCDEFGHIJKLMNOPQRSTUVWXYZ", exclude),
+            characters("abcdefghijklmnopqrstuvwxyz", exclude),
+            characters("0123456789", exclude),
+            characters(special, exclude)
+        };
+        int[] owed = minimums.clone();
+        for (int c = 0; c < 4; c++) {
+            if (validator.requires(c)) {
+                owed[c] = Math.max(owed[c], 1);
+            }
+        }
+
+        int alphabetSize = 0;
+        int totalOwed = 0;
+        int states = 1;
+        int[] radix = new int[4];
+        for (int c = 0; c < 4; c++) {
+            if (owed[c] < 0) {
+                throw new IllegalArgumentException("MIN_" + CLASS_NAMES[c] + " must not be negative");
+            }
+            if (owed[c] > 0 && classes[c].length == 0) {
+                throw new IllegalArgumentException("no " + CLASS_NAMES[c] + " characters left after exclusions");
+            }
+            alphabetSize += classes[c].length;
+            totalOwed += owed[c];
+            radix[c] = states;
+            states *= owed[c] + 1;
+            if (states > MAX_STATES) {
+                throw new IllegalArgumentException("character minimums are too large");
+            }
+        }
+        if (totalOwed > this.minLength) {
+            throw new IllegalArgumentException("minimums add up to more than the shortest length " + this.minLength);
+        }
+
+        weights = new double[4];
+        StringBuilder all = new StringBuilder();
+        for (int c = 0; c < 4; c++) {
+            weights[c] = (double) classes[c].length / alphabetSize;
+            all.append(classes[c]);
+        }
+        this.alphabet = all.toString().toCharArray();
+        next = new int[states][4];
+        for (int s = 0; s < states; s++) {
+            for (int c = 0; c < 4; c++) {
+                boolean stillOwed = s / radix[c] % (owed[c] + 1) > 0;
+                next[s][c] = stillOwed ? s - radix[c] : s;
+            }
+        }
+        int begin = 0;
+        for (int c = 0; c < 4; c++) {
+            begin += owed[c] * radix[c];
+        }
+        start = begin;
+
+        completions = new double[tableLength + 1][states];
+        completions[0][0] = 1;
+        for (int r = 1; r <= tableLength; r++) {
+            for (int s = 0; s < states; s++) {
+                double sum = 0;
+                for (int c = 0; c < 4; c++) {
+                    sum += weights[c] * completions[r - 1][next[s][c]];
+                }
+                completions[r][s] = sum;
+            }
+        }
+
+        words = null;
+        digits = null;
+        wordCount = 0;
+        separator = 0;
+    }
+
+    /**
+     * Compiles a passphrase policy
+     * @param wordList Candidate words; duplicates, words containing excluded
+     *                 characters or the separator, and words not starting with a letter are dropped
+     * @param wordCount Words per passphrase (at least 2)
+     * @param separator Character between words, one PasswordValidator counts as special
+     * @param exclude Characters never to use
+     */
+    GenerationPolicy(String name, List<String> wordList, int wordCount, char separator, String exclude) {
+        this.name = name;
+        if (wordCount < 2) {
+            throw new IllegalArgumentException("a passphrase needs at least 2 words");
+        }
+        if (validator.getSpecial().indexOf(separator) < 0 || exclude.indexOf(separator) >= 0) {
+            throw new IllegalArgumentException("separator must be one of " + validator.getSpecial());
+        }
+        Set<String> unique = new LinkedHashSet<>();
+        for (String word : wordList) {
+            word = word.trim().toLowerCase();
+            if (usableWord(word, separator, exclude)) {
+                unique.add(word);
+            }
+        }
+        if (unique.size() < 2) {
+            throw new IllegalArgumentException("the word list has fewer than 2 usable words");
+        }
+        words = new char[unique.size()][];
+        int index = 0;
+        int shortest = Integer.MAX_VALUE;
+        int longest = 0;
+        for (String word : unique) {
+            char[] letters = word.toCharArray();
+            letters[0] = Character.toUpperCase(letters[0]);
+            words[index++] = letters;
+            shortest = Math.min(shortest, letters.length);
+            longest = Math.max(longest, letters.length);
+        }
+        digits = characters("0123456789", exclude);
+        if (digits.length == 0) {
+            throw new IllegalArgumentException("no DIGIT characters left after exclusions");
+        }
+        this.wordCount = wordCount;
+        this.separator = separator;
+        // Words, separators and the digit
+        minLength = wordCount * shortest + wordCount;
+        maxLength = wordCount * longest + wordCount;
+        if (minLength < validator.getMinLength()) {
+            throw new IllegalArgumentException("passphrases could be shorter than "
+                + validator.getMinLength() + " characters; use more words");
+        }
+
+        classes = null;
+        alphabet = null;
+        weights = null;
+        next = null;
+        completions = null;
+        start = 0;
+    }
+
+    /**
+     * Returns a configured policy, compiling it on first use
+     * @param name A name listed in GENERATION_POLICIES
+     * @throws IllegalArgumentException if the policy is unknown or its settings are invalid
+     */
+    public static GenerationPolicy named(String name) {
+        if (!names().contains(name)) {
+            throw new IllegalArgumentException("Unknown generation policy: " + name);
+        }
+        return compiled.computeIfAbsent(name, GenerationPolicy::fromConfig);
+    }
+
+    /**
+     * @return The policy names listed in GENERATION_POLICIES
+     */
+    public static List<String> names() {
+        List<String> names = new ArrayList<>();
+        for (String name : AppConfig.get("GENERATION_POLICIES", "").split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+
+    private static GenerationPolicy fromConfig(String name) {
+        String prefix = "POLICY_" + name + "_";
+        String exclude = AppConfig.get(prefix + "EXCLUDE", "");
+        boolean textVault = AppConfig.get("VAULT_FORMAT", "text").equalsIgnoreCase("text");
+        try {
+            if (AppConfig.get(prefix + "MODE", "chars").equalsIgnoreCase("passphrase")) {
+                String wordList = AppConfig.get(prefix + "WORDLIST", null);
+                if (wordList == null) {
+                    throw new IllegalArgumentException("passphrase policy needs a WORDLIST file");
+                }
+                char separator = AppConfig.get(prefix + "SEPARATOR", "-").charAt(0);
+                if (textVault && separator == ',') {
+                    throw new IllegalArgumentException("the text vault cannot store a comma SEPARATOR; use VAULT_FORMAT=binary");
+                }
+                List<String> lines = Files.readAllLines(Paths.get(wordList), StandardCharsets.UTF_8);
+                return new GenerationPolicy(name, lines, AppConfig.getInt(prefix + "WORDS", 5), separator, exclude);
+            }
+            String[] length = AppConfig.get(prefix + "LENGTH", "12").split("-");
+            int min = Integer.parseInt(length[0].trim());
+            int max = length.length > 1 ? Integer.parseInt(length[1].trim()) : min;
+            int[] minimums = new int[4];
+            for (int c = 0; c < 4; c++) {
+                minimums[c] = AppConfig.getInt(prefix + "MIN_" + CLASS_NAMES[c], 1);
+            }
+            String special = AppConfig.get(prefix + "SPECIAL", STORABLE_SPECIAL);
+            if (textVault && special.indexOf(',') >= 0) {
+                throw new IllegalArgumentException("the text vault cannot store commas in SPECIAL; use VAULT_FORMAT=binary");
+            }
+            return new GenerationPolicy(name, min, max, minimums, special, exclude);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid generation policy " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The longest password this policy generates; the size of buffer fill() needs
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @return Bits of entropy in one generated password
+     */
+    public double entropyBits() {
+        if (words != null) {
+            // Words, plus which word the digit follows and the digit itself
+            return wordCount * log2(words.length) + log2(wordCount) + log2(digits.length);
+        }
+        double sum = 0;
+        for (int length = minLength; length <= maxLength; length++) {
+            sum += length * log2(alphabet.length) + log2(completions[length][start]);
+        }
+        int lengths = maxLength - minLength + 1;
+        return log2(lengths) + sum / lengths;
+    }
+
+    /**
+     * Writes one password into the start of the buffer
+     * @param out At least getMaxLength() characters
+     * @return The password's length
+     */
+    int fill(char[] out, PasswordGenerator.RandomSource source) {
+        if (words != null) {
+            return fillPassphrase(out, source);
+        }
+        int length = minLength + source.nextInt(maxLength - minLength + 1);
+        fill(out, length, source);
+        return length;
+    }
+
+    /**
+     * Writes a character password of exactly the given length, which must be
+     * within the table this policy was compiled with
+     */
+    void fill(char[] out, int length, PasswordGenerator.RandomSource source) {
+        int state = start;
+        for (int i = 0; i < length; i++) {
+            if (state == 0) {
+                // Nothing owed: every character is equally likely
+                out[i] = alphabet[source.nextInt(alphabet.length)];
+                continue;
+            }
+            double[] after = completions[length - i - 1];
+            // Choose the class with probability proportional to the completions it leaves
+            double target = source.nextDouble() * completions[length - i][state];
+            double sum = 0;
+            int chosen = -1;
+            for (int c = 0; c < 4; c++) {
+                double weight = weights[c] * after[next[state][c]];
+                if (weight > 0) {
+                    chosen = c;
+                    sum += weight;
+                    if (target < sum) {
+                        break;
+                    }
+                }
+            }
+            char[] set = classes[chosen];
+            out[i] = set[source.nextInt(set.length)];
+            state = next[state][chosen];
+        }
+    }
+
+    private int fillPassphrase(char[] out, PasswordGenerator.RandomSource source) {
+        int digitAfter = source.nextInt(wordCount);
+        int length = 0;
+        for (int w = 0; w < wordCount; w++) {
+            if (w > 0) {
+                out[length++] = separator;
+            }
+            char[] word = words[source.nextInt(words.length)];
+            System.arraycopy(word, 0, out, length, word.length);
+            length += word.length;
+            if (w == digitAfter) {
+                out[length++] = digits[source.nextInt(digits.length)];
+            }
+        }
+        return length;
+    }
+
+    private static char[] characters(String set, String exclude) {
+        StringBuilder kept = new StringBuilder();
+        for (char c : set.toCharArray()) {
+            // Duplicates would make a character more likely than the rest
+            if (exclude.indexOf(c) < 0 && kept.indexOf(String.valueOf(c)) < 0) {
+                kept.append(c);
+            }
+        }
+        return kept.toString().toCharArray();
+    }
+
+    private static boolean usableWord(String word, char separator, String exclude) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        // The first letter is written capitalised
+        char first = Character.toUpperCase(word.charAt(0));
+        if (!Character.isLetter(first) || !Character.isUpperCase(first) || exclude.indexOf(first) >= 0) {
+            return false;
+        }
+        boolean lower = false;
+        for (int i = 1; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == separator || Character.isWhitespace(c) || exclude.indexOf(c) >= 0) {
+                return false;
+            }
+            lower |= Character.isLowerCase(c);
+        }
+        // A validator that needs a lower case letter gets one from every word
+        return lower || !validator.requires(PasswordValidator.LOWER);
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
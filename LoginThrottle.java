@@ -0,0 +1,133 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks failed logins per username across every session and thread, and locks
+ * a username out after too many recent failures.
+ *
+ * Each username's state is one AtomicLong packing the decayed failure count
+ * (high 16 bits) and the time of the last failure (low 48 bits, epoch millis),
+ * updated with compare-and-set, so concurrent logins never take a lock.
+ * One failure is forgotten per decay interval. Once the count reaches the
+ * limit, the user is locked out for the lockout time, doubling with every
+ * further failure up to an hour.
+ *
+ * References:
+ * - Compare-and-swap: https://en.wikipedia.org/wiki/Compare-and-swap
+ * - OWASP authentication (account lockout): https://cheatsheetseries.owasp.org/cheatsheets/Authentication_Cheat_Sheet.html
+ */
+public class LoginThrottle {
+    private static final int TIME_BITS = 48;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final int MAX_COUNT = 0xFFFF;
+    private static final long MAX_LOCKOUT_MS = 60 * 60 * 1000L;
+    // Above this many tracked usernames, fully decayed entries are swept out
+    private static final int SWEEP_THRESHOLD = 100_000;
+
+    private final ConcurrentHashMap<String, AtomicLong> failures = new ConcurrentHashMap<>();
+    private final int maxFailures;
+    private final long decayMillis;
+    private final long lockoutMillis;
+
+    /**
+     * @param maxFailures Recent failures allowed before a lockout
+     * @param decayMillis Time after which one failure is forgotten
+     * @param lockoutMillis Length of the first lockout
+     */
+    public LoginThrottle(int maxFailures, long decayMillis, long lockoutMillis) {
+        this.maxFailures = Math.max(1, maxFailures);
+        this.decayMillis = Math.max(1, decayMillis);
+        this.lockoutMillis = lockoutMillis;
+    }
+
+    /**
+     * @return A throttle configured by LOGIN_MAX_FAILURES, LOGIN_FAILURE_DECAY_MS and LOGIN_LOCKOUT_MS
+     */
+    public static LoginThrottle fromConfig() {
+        return new LoginThrottle(
+            AppConfig.getInt("LOGIN_MAX_FAILURES", 5),
+            AppConfig.getInt("LOGIN_FAILURE_DECAY_MS", 60000),
+            AppConfig.getInt("LOGIN_LOCKOUT_MS", 30000));
+    }
+
+    /**
+     * @return Milliseconds until the username may try again, or 0 if it is not locked out
+     */
+    public long lockoutRemaining(String username) {
+        AtomicLong state = failures.get(username);
+        if (state == null) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long current = state.get();
+        int count = count(current);
+        if (count < maxFailures) {
+            return 0;
+        }
+        long until = time(current) + lockoutFor(count);
+        return Math.max(0, until - now);
+    }
+
+    /**
+     * Counts a failed login
+     */
+    public void recordFailure(String username) {
+        if (failures.size() > SWEEP_THRESHOLD) {
+            sweep();
+        }
+        AtomicLong state = failures.computeIfAbsent(username, k -> new AtomicLong());
+        long now = System.currentTimeMillis();
+        long current;
+        long next;
+        do {
+            current = state.get();
+            int count = Math.min(decayed(current, now) + 1, MAX_COUNT);
+            next = pack(count, now);
+        } while (!state.compareAndSet(current, next));
+        if (count(next) >= maxFailures) {
+            Diagnostics.warn("Login for {} locked out after repeated failures", username);
+        }
+    }
+
+    /**
+     * Clears the username's failures after a successful login
+     */
+    public void recordSuccess(String username) {
+        failures.remove(username);
+    }
+
+    private long lockoutFor(int count) {
+        int extra = Math.min(count - maxFailures, 20);
+        return Math.min(lockoutMillis << extra, MAX_LOCKOUT_MS);
+    }
+
+    /**
+     * The failure count after forgetting one failure per decay interval since the
+     * last failure; a lockout in progress is not shortened by decay
+     */
+    private int decayed(long state, long now) {
+        int count = count(state);
+        long elapsed = now - time(state);
+        if (count >= maxFailures && elapsed < lockoutFor(count)) {
+            return count;
+        }
+        return (int) Math.max(0, count - elapsed / decayMillis);
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        failures.entrySet().removeIf(entry -> decayed(entry.getValue().get(), now) == 0);
+    }
+
+    private static long pack(int count, long time) {
+        return (long) count << TIME_BITS | (time & TIME_MASK);
+    }
+
+    private static int count(long state) {
+        return (int) (state >>> TIME_BITS);
+    }
+
+    private static long time(long state) {
+        return state & TIME_MASK;
+    }
+}
@@ -7,21 +7,26 @@
  * Menu Design: https://stackoverflow.com/questions/13536679/java-create-a-menu-which-performs-various-tasks
  */
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Scanner;
 import java.util.List;
 
 public class MainMenu {
     private AccountManager accountManager;
-    private FileManager fileManager;
     private Scanner scanner;
+    private VaultHttpServer httpApi;
     
     public MainMenu() {
         this.accountManager = new AccountManager();
-        this.fileManager = new FileManager();
         this.scanner = new Scanner(System.in);
     }
     
     public void start() {
+        startHttpApi();
+        if (AppConfig.getBoolean("VALIDATE_ON_LOAD", false)) {
+            reportWeakPasswordCount();
+        }
         while (true) {
             displayMenu();
             int choice = scanner.nextInt();
@@ -43,6 +48,18 @@ public class MainMenu {
                 case 5:
                     generatePassword();
                     break;
+                case 6:
+                    searchAccounts();
+                    break;
+                case 7:
+                    checkPasswordHealth();
+                    break;
+                case 8:
+                    auditPasswordReuse();
+                    break;
+                case 9:
+                    importAccounts();
+                    break;
                 case 0:
                     exit();
                     return;
@@ -59,6 +76,10 @@ public class MainMenu {
         System.out.println("3. Modify account");
         System.out.println("4. Delete account");
         System.out.println("5. Generate password");
+        System.out.println("6. Search accounts");
+        System.out.println("7. Check password strength");
+        System.out.println("8. Find reused passwords");
+        System.out.println("9. Import accounts from CSV");
         System.out.println("0. Exit");
         System.out.print("Enter your choice: ");
     }
@@ -80,7 +101,7 @@ public class MainMenu {
             System.out.print("Enter password: ");
             password = scanner.nextLine();
             while (!PasswordValidator.isValid(password)) {
-                System.out.println("Password does not meet requirements. Please try again.");
+                printRequirementsNotMet(password);
                 System.out.print("Enter password: ");
                 password = scanner.nextLine();
             }
@@ -90,9 +111,9 @@ public class MainMenu {
         String category = scanner.nextLine();
         
         Account account = new Account(accountName, username, password, category);
-        accountManager.addAccount(account);
-        fileManager.saveData(accountManager);
-        System.out.println("Account added successfully!");
+        if (accountManager.addAccount(account)) {
+            System.out.println("Account added successfully!");
+        }
     }
     
     private void viewAccounts() {
@@ -130,20 +151,38 @@ public class MainMenu {
         }
     }
     
+    private void searchAccounts() {
+        System.out.println("\n=== Search Accounts ===");
+        System.out.println("Type part of an account name or username. Refine and search again, or press Enter to finish.");
+        
+        while (true) {
+            System.out.print("Search: ");
+            String query = scanner.nextLine();
+            if (query.trim().isEmpty()) {
+                return;
+            }
+            
+            List<Account> results = accountManager.search(query, 20);
+            if (results.isEmpty()) {
+                System.out.println("No matches.");
+                continue;
+            }
+            for (Account account : results) {
+                System.out.println("---------------------------------");
+                System.out.println("Account: " + account.getAccountName() + " [" + account.getCategory() + "]");
+                System.out.println("Username: " + account.getUsername());
+                System.out.println("Password: " + account.getPassword());
+            }
+            System.out.println("---------------------------------");
+        }
+    }
+    
     private void modifyAccount() {
         System.out.println("\n=== Modify Account ===");
         System.out.print("Enter account name to modify: ");
         String accountName = scanner.nextLine();
         
-        // Find the account to modify
-        List<Account> allAccounts = accountManager.viewAccounts();
-        Account oldAccount = null;
-        for (Account acc : allAccounts) {
-            if (acc.getAccountName().equals(accountName)) {
-                oldAccount = acc;
-                break;
-            }
-        }
+        Account oldAccount = accountManager.findAccount(accountName);
         
         if (oldAccount == null) {
             System.out.println("Account not found: " + accountName);
@@ -159,6 +198,9 @@ public class MainMenu {
             newUsername = oldAccount.getUsername();
         }
         
+        if (PasswordValidator.standard().isBreached(oldAccount.getPassword())) {
+            System.out.println("Warning: the current password is in the breached password list; change it.");
+        }
         System.out.print("Generate new password? (y/n): ");
         String newPassword = oldAccount.getPassword();
         if (scanner.nextLine().toLowerCase().startsWith("y")) {
@@ -169,7 +211,7 @@ public class MainMenu {
             String tempPass = scanner.nextLine();
             if (!tempPass.trim().isEmpty()) {
                 while (!PasswordValidator.isValid(tempPass)) {
-                    System.out.println("Password does not meet requirements. Please try again.");
+                    printRequirementsNotMet(tempPass);
                     System.out.print("New password: ");
                     tempPass = scanner.nextLine();
                 }
@@ -192,20 +234,156 @@ public class MainMenu {
         System.out.print("Enter account name to delete: ");
         String accountName = scanner.nextLine();
         
-        accountManager.deleteAccount(accountName);
-        fileManager.saveData(accountManager);
-        System.out.println("Account deleted successfully!");
+        if (accountManager.deleteAccount(accountName)) {
+            System.out.println("Account deleted successfully!");
+        }
+    }
+    
+    private void printRequirementsNotMet(String password) {
+        List<String> reasons = PasswordValidator.standard().evaluate(password).getReasons();
+        System.out.println("Password does not meet requirements (" + String.join(", ", reasons) + "). Please try again.");
+    }
+    
+    /**
+     * Lists every weak or invalid password in the vault with the reasons
+     */
+    private void checkPasswordHealth() {
+        System.out.println("\n=== Password Strength ===");
+        List<PasswordValidator.Finding> weak = PasswordValidator.standard().findWeak(accountManager);
+        if (weak.isEmpty()) {
+            System.out.println("No weak passwords found.");
+            return;
+        }
+        for (PasswordValidator.Finding finding : weak) {
+            PasswordValidator.Result result = finding.getResult();
+            System.out.println("---------------------------------");
+            System.out.println("Account: " + finding.getAccount().getAccountName() + " [" + finding.getAccount().getCategory() + "]");
+            System.out.printf("Strength: %s (about %.0f bits)%n", result.getLabel(), result.getEntropyBits());
+            System.out.println("Why: " + String.join(", ", result.getReasons()));
+        }
+        System.out.println("---------------------------------");
+        System.out.println(weak.size() + " weak password(s). Use option 3 to change them.");
+    }
+    
+    /**
+     * Lists accounts sharing a password, then accounts with nearly the same password
+     */
+    private void auditPasswordReuse() {
+        System.out.println("\n=== Password Reuse ===");
+        PasswordAudit.Report report = PasswordAudit.audit(accountManager);
+        System.out.println("Checked " + report.getAccounts() + " accounts (" + report.getDistinctPasswords()
+            + " distinct passwords) in " + report.getElapsedMillis() + " ms.");
+        printGroups("Same password", report.getReused());
+        printGroups("Nearly the same password", report.getSimilar());
+        if (report.getReused().isEmpty() && report.getSimilar().isEmpty()) {
+            System.out.println("No reused passwords found.");
+        } else {
+            System.out.println("Use option 3 to give these accounts their own passwords.");
+        }
+    }
+    
+    private void printGroups(String title, List<List<Account>> groups) {
+        int shown = Math.min(groups.size(), 20);
+        for (int i = 0; i < shown; i++) {
+            List<Account> group = groups.get(i);
+            System.out.println("---------------------------------");
+            System.out.println(title + " (" + group.size() + " accounts):");
+            for (Account account : group) {
+                System.out.println("  " + account.getAccountName() + " [" + account.getCategory() + "]");
+            }
+        }
+        if (groups.size() > shown) {
+            System.out.println("... and " + (groups.size() - shown) + " more group(s)");
+        }
+    }
+    
+    /**
+     * Imports a CSV export from another password manager
+     */
+    private void importAccounts() {
+        System.out.println("\n=== Import Accounts ===");
+        System.out.print("CSV file to import: ");
+        String path = scanner.nextLine().trim();
+        System.out.print("Category for accounts without a folder [" + CsvImporter.DEFAULT_CATEGORY + "]: ");
+        String category = scanner.nextLine();
+        CsvImporter.Report report;
+        try {
+            report = CsvImporter.importFile(accountManager, new File(path), category);
+        } catch (IOException e) {
+            System.out.println("Error importing accounts: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            return;
+        }
+        printImportReport(report);
+    }
+    
+    static void printImportReport(CsvImporter.Report report) {
+        System.out.println("Read " + report.getRows() + " rows in " + report.getElapsedMillis() + " ms: "
+            + report.getAdded() + " added, " + report.getUnchanged() + " already in the vault, "
+            + report.getConflicts() + " name conflicts, " + report.getSkipped() + " skipped.");
+        for (String problem : report.getProblems()) {
+            System.out.println("  " + problem);
+        }
+        int unlisted = report.getConflicts() + report.getSkipped() - report.getProblems().size();
+        if (unlisted > 0) {
+            System.out.println("  ... and " + unlisted + " more");
+        }
+    }
+    
+    private void reportWeakPasswordCount() {
+        long start = System.nanoTime();
+        int weak = PasswordValidator.standard().findWeak(accountManager).size();
+        if (Diagnostics.isInfoEnabled()) {
+            Diagnostics.info("Checked vault password strength in {} ms", (System.nanoTime() - start) / 1_000_000);
+        }
+        if (weak > 0) {
+            System.out.println(weak + " weak password(s) in the vault; choose 7 to see them.");
+        }
     }
     
     private void generatePassword() {
         System.out.println("\n=== Generate Password ===");
-        String generatedPassword = PasswordGenerator.generatePassword();
+        String policy = "";
+        List<String> policies = GenerationPolicy.names();
+        if (!policies.isEmpty()) {
+            System.out.print("Policy (" + String.join(", ", policies) + "; Enter for standard): ");
+            policy = scanner.nextLine().trim();
+        }
+        String generatedPassword;
+        try {
+            generatedPassword = policy.isEmpty()
+                ? PasswordGenerator.generatePassword()
+                : PasswordGenerator.generatePassword(GenerationPolicy.named(policy));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error generating password: " + e.getMessage());
+            return;
+        }
         System.out.println("Generated password: " + generatedPassword);
     }
     
+    /**
+     * Serves the JSON API alongside the menu when HTTP_PORT is set
+     */
+    private void startHttpApi() {
+        int port = AppConfig.getInt("HTTP_PORT", 0);
+        if (port <= 0) {
+            return;
+        }
+        httpApi = new VaultHttpServer(accountManager, new AuthenticationSystem());
+        try {
+            httpApi.start(port);
+        } catch (IOException e) {
+            System.out.println("Error starting HTTP API: " + e.getMessage());
+            httpApi = null;
+        }
+    }
+    
     private void exit() {
+        if (httpApi != null) {
+            httpApi.stop();
+        }
         System.out.println("Saving data...");
-        fileManager.saveData(accountManager);
+        accountManager.close();
         System.out.println("Thank you for using Password Manager!");
         scanner.close();
     }
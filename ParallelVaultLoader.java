@@ -0,0 +1,90 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Loads passwords.txt using every core.
+ * The file is read sequentially in chunks of lines; each chunk is decrypted and
+ * parsed as its own fork-join task while the reader moves on to the next chunk.
+ * Results are collected in chunk order, so the accounts come back in exactly the
+ * order a serial load would produce.
+ *
+ * References:
+ * - ForkJoinPool: https://docs.oracle.com/javase/8/docs/api/java/util/concurrent/ForkJoinPool.html
+ * - Fork/Join tutorial: https://www.baeldung.com/java-fork-join
+ */
+public class ParallelVaultLoader {
+    private static final int DEFAULT_CHUNK_SIZE = 2048;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * @param threads Number of worker threads, or 0 to use the common pool
+     * @param chunkSize Lines per task
+     */
+    public ParallelVaultLoader(int threads, int chunkSize) {
+        this.pool = threads > 0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool();
+        this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+    }
+
+    /**
+     * Reads, decrypts and parses every record in the file
+     * @param file The encrypted vault file (one Base64 record per line)
+     * @return The accounts in file order
+     * @throws IOException If the file cannot be read
+     */
+    public List<Account> load(File file) throws IOException {
+        try {
+            List<ForkJoinTask<List<Account>>> tasks = new ArrayList<>();
+
+            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                List<String> chunk = new ArrayList<>(chunkSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        chunk.add(line);
+                    }
+                    if (chunk.size() == chunkSize) {
+                        tasks.add(submit(chunk));
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    tasks.add(submit(chunk));
+                }
+            }
+
+            // Join in submission order so the merge is deterministic
+            List<Account> accounts = new ArrayList<>();
+            for (ForkJoinTask<List<Account>> task : tasks) {
+                accounts.addAll(task.join());
+            }
+            return accounts;
+        } finally {
+            // Also on failure, so a bad record or read error does not leak the workers
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private ForkJoinTask<List<Account>> submit(List<String> chunk) {
+        return pool.submit(() -> parseChunk(chunk));
+    }
+
+    private static List<Account> parseChunk(List<String> lines) {
+        List<Account> accounts = new ArrayList<>(lines.size());
+        List<String> decrypted = EncryptionUtil.decryptAll(lines);
+        for (int i = 0; i < decrypted.size(); i++) {
+            Account account = Account.fromRecord(decrypted.get(i));
+            if (account != null) {
+                account.setStoredLine(lines.get(i));
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+}
@@ -0,0 +1,296 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Finds passwords that are used for more than one account, or that differ by a
+ * single edit ("Summer2024!" and "Summer2025!").
+ *
+ * Exact reuse groups the accounts by password in a parallel stream. Near
+ * duplicates are found without comparing every pair: each distinct password is
+ * looked up, by rolling hash, with each one of its characters deleted and with
+ * each pair of neighbours swapped (catching insertions, deletions and swaps), and
+ * is bucketed by "deleted at position i" so passwords differing only at i meet in
+ * one bucket (catching substitutions). The hashes are computed in parallel into
+ * primitive arrays and tables, so nothing is boxed. Every candidate is checked
+ * character by character before it counts, and the matches are joined into
+ * groups with union-find. The work grows with the total length of the
+ * passwords, not with the square of their number.
+ *
+ * References:
+ * - Rolling hash: https://en.wikipedia.org/wiki/Rolling_hash
+ * - Symmetric delete (deletion neighbourhoods): https://github.com/wolfgarbe/SymSpell
+ * - Disjoint-set union: https://en.wikipedia.org/wiki/Disjoint-set_data_structure
+ */
+public class PasswordAudit {
+    private static final long BASE = 1_000_003L;
+    private static final Comparator<Account> BY_NAME = Comparator.comparing(Account::getAccountName);
+
+    /**
+     * The audit's findings
+     */
+    public static class Report {
+        private final List<List<Account>> reused;
+        private final List<List<Account>> similar;
+        private final int accounts;
+        private final int distinctPasswords;
+        private final long elapsedMillis;
+
+        Report(List<List<Account>> reused, List<List<Account>> similar, int accounts, int distinctPasswords, long elapsedMillis) {
+            this.reused = reused;
+            this.similar = similar;
+            this.accounts = accounts;
+            this.distinctPasswords = distinctPasswords;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /** @return Groups of accounts sharing one password, largest first */
+        public List<List<Account>> getReused() {
+            return reused;
+        }
+
+        /** @return Groups of accounts whose passwords are one edit apart from another in the group, largest first */
+        public List<List<Account>> getSimilar() {
+            return similar;
+        }
+
+        public int getAccounts() {
+            return accounts;
+        }
+
+        public int getDistinctPasswords() {
+            return distinctPasswords;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    /**
+     * Audits every account in the vault
+     */
+    public static Report audit(AccountManager accountManager) {
+        return audit(accountManager.viewAccounts());
+    }
+
+    /**
+     * Audits the given accounts
+     */
+    public static Report audit(Collection<Account> accounts) {
+        long start = System.nanoTime();
+        Map<String, List<Account>> byPassword = accounts.parallelStream()
+            .filter(account -> account.getPassword() != null)
+            .collect(Collectors.groupingByConcurrent(Account::getPassword));
+
+        String[] passwords = byPassword.keySet().toArray(new String[0]);
+        List<List<Account>> reused = new ArrayList<>();
+        for (String password : passwords) {
+            List<Account> group = byPassword.get(password);
+            if (group.size() > 1) {
+                group.sort(BY_NAME);
+                reused.add(group);
+            }
+        }
+        reused.sort(Comparator.comparingInt((List<Account> group) -> -group.size()));
+
+        int maxLength = 0;
+        for (String password : passwords) {
+            maxLength = Math.max(maxLength, password.length());
+        }
+        long[] powers = new long[maxLength + 1];
+        powers[0] = 1;
+        for (int i = 1; i <= maxLength; i++) {
+            powers[i] = powers[i - 1] * BASE;
+        }
+        HashTable byHash = new HashTable(passwords.length);
+        int[] offsets = new int[passwords.length + 1];
+        for (int i = 0; i < passwords.length; i++) {
+            byHash.putIfAbsent(hash(passwords[i]), i);
+            offsets[i + 1] = offsets[i] + passwords[i].length();
+        }
+        // keys[offsets[i] + k]: bucket of passwords[i] with character k left out
+        long[] keys = new long[offsets[passwords.length]];
+        long[] edges = IntStream.range(0, passwords.length).parallel()
+            .mapToObj(i -> neighbours(i, passwords, powers, byHash, keys, offsets[i]))
+            .flatMapToLong(LongStream.Builder::build)
+            .toArray();
+
+        // Passwords equal except at one position share that position's bucket
+        LongStream.Builder substitutions = LongStream.builder();
+        HashTable buckets = new HashTable(keys.length);
+        for (int i = 0; i < passwords.length; i++) {
+            for (int k = 0; k < passwords[i].length(); k++) {
+                int other = buckets.putIfAbsent(keys[offsets[i] + k], i);
+                if (other >= 0 && isSubstitution(passwords[i], passwords[other], k)) {
+                    substitutions.add((long) i << 32 | other);
+                }
+            }
+        }
+
+        int[] parent = new int[passwords.length];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (long edge : LongStream.concat(Arrays.stream(edges), substitutions.build()).toArray()) {
+            int a = find(parent, (int) (edge >>> 32));
+            int b = find(parent, (int) edge);
+            if (a != b) {
+                parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+        Map<Integer, List<Account>> components = new HashMap<>();
+        int[] sizes = new int[passwords.length];
+        for (int i = 0; i < passwords.length; i++) {
+            sizes[find(parent, i)]++;
+        }
+        for (int i = 0; i < passwords.length; i++) {
+            int root = find(parent, i);
+            // A component of one distinct password is exact reuse, not similarity
+            if (sizes[root] > 1) {
+                components.computeIfAbsent(root, k -> new ArrayList<>()).addAll(byPassword.get(passwords[i]));
+            }
+        }
+        List<List<Account>> similar = new ArrayList<>(components.values());
+        for (List<Account> group : similar) {
+            group.sort(BY_NAME);
+        }
+        similar.sort(Comparator.comparingInt((List<Account> group) -> -group.size()));
+
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        if (Diagnostics.isInfoEnabled()) {
+            Diagnostics.info("Audited {} distinct passwords in {} ms", passwords.length, elapsed);
+        }
+        return new Report(reused, similar, accounts.size(), passwords.length, elapsed);
+    }
+
+    /**
+     * Finds the passwords one insertion, deletion or swap away from passwords[i],
+     * as edges (i << 32 | other), and writes its substitution bucket keys
+     */
+    private static LongStream.Builder neighbours(int i, String[] passwords, long[] powers,
+                                                 HashTable byHash, long[] keys, int offset) {
+        LongStream.Builder edges = LongStream.builder();
+        String password = passwords[i];
+        int n = password.length();
+        // prefix[k]: hash of the first k characters
+        long[] prefix = new long[n + 1];
+        for (int k = 0; k < n; k++) {
+            prefix[k + 1] = prefix[k] * BASE + password.charAt(k);
+        }
+        long full = prefix[n];
+        for (int k = 0; k < n; k++) {
+            // Hash of the password without character k
+            long suffix = full - prefix[k + 1] * powers[n - k - 1];
+            long deleted = prefix[k] * powers[n - k - 1] + suffix;
+
+            // Another password that is this one minus a character
+            int shorter = byHash.get(deleted);
+            if (shorter >= 0 && isDeletion(password, passwords[shorter], k)) {
+                edges.add((long) i << 32 | shorter);
+            }
+
+            keys[offset + k] = mix(deleted, k, n);
+
+            // Another password equal to this one with characters k and k + 1 swapped
+            if (k + 1 < n && password.charAt(k) != password.charAt(k + 1)) {
+                long difference = password.charAt(k + 1) - password.charAt(k);
+                long swapped = full + difference * powers[n - k - 1] - difference * powers[n - k - 2];
+                int transposed = byHash.get(swapped);
+                if (transposed >= 0 && isTransposition(password, passwords[transposed], k)) {
+                    edges.add((long) i << 32 | transposed);
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static long hash(String password) {
+        long hash = 0;
+        for (int k = 0; k < password.length(); k++) {
+            hash = hash * BASE + password.charAt(k);
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int position, int length) {
+        long key = hash + position * 0x9E3779B97F4A7C15L + ((long) length << 48);
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        return key ^ (key >>> 33);
+    }
+
+    private static boolean isDeletion(String password, String shorter, int k) {
+        return shorter.length() == password.length() - 1
+            && password.regionMatches(0, shorter, 0, k)
+            && password.regionMatches(k + 1, shorter, k, shorter.length() - k);
+    }
+
+    private static boolean isSubstitution(String password, String other, int k) {
+        return other.length() == password.length()
+            && password.regionMatches(0, other, 0, k)
+            && password.regionMatches(k + 1, other, k + 1, password.length() - k - 1);
+    }
+
+    private static boolean isTransposition(String password, String other, int k) {
+        return other.length() == password.length()
+            && other.charAt(k) == password.charAt(k + 1)
+            && other.charAt(k + 1) == password.charAt(k)
+            && password.regionMatches(0, other, 0, k)
+            && password.regionMatches(k + 2, other, k + 2, password.length() - k - 2);
+    }
+
+    /**
+     * Open-addressing map from long keys to non-negative ints
+     */
+    private static class HashTable {
+        private final long[] keys;
+        // Value + 1, so 0 marks an empty slot
+        private final int[] values;
+        private final int mask;
+
+        HashTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 1) * 2 + 1) * 2;
+            keys = new long[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        /** @return The value for the key, or -1 */
+        int get(long key) {
+            for (int slot = (int) mix(key, 0, 0) & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /** @return The value already stored for the key, or -1 after storing this one */
+        int putIfAbsent(long key, int value) {
+            int slot = (int) mix(key, 0, 0) & mask;
+            for (; values[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot] - 1;
+                }
+            }
+            keys[slot] = key;
+            values[slot] = value + 1;
+            return -1;
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
@@ -1,23 +1,86 @@
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * Generates secure random passwords that meet specific complexity requirements.
- * 
+ *
+ * Passwords come from a compiled GenerationPolicy: the standard one (every
+ * character class, at least one of each) unless the caller names another.
+ * Each thread has its own SecureRandom and draws random bytes from it in blocks,
+ * so concurrent callers do not contend on one generator, and a character costs a
+ * byte from the block instead of a call into SecureRandom. Indexes are taken by
+ * rejection sampling, so every character stays uniformly distributed.
+ *
+ * The bulk methods fill char[] buffers across every core; char[] (unlike String)
+ * can be wiped once a password has been delivered.
+ *
+ * With BREACH_CORPUS set, a password found in the corpus is discarded and drawn
+ * again, so output stays uniform over the passwords that are not in it.
+ *
  * References:
  * - SecureRandom: https://docs.oracle.com/javase/8/docs/api/java/security/SecureRandom.html
  * - Password Generation: https://stackoverflow.com/questions/41107/how-to-generate-a-random-alpha-numeric-string
- * - Fisher-Yates Shuffle: https://stackoverflow.com/questions/1519736/random-shuffling-of-an-array
+ * - Rejection sampling: https://www.pcg-random.org/posts/bounded-rands.html
  */
 public class PasswordGenerator {
-    // Character sets for password generation
-    private static final String LOWERCASE = "abcdefghijklmnopqrstuvwxyz";
-    private static final String UPPERCASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private static final String NUMBERS = "0123456789";
-    private static final String SPECIAL = "!@#$%^&*()_+-=[]{}|;:,.<>?";
-    
-    // Using SecureRandom instead of Random for better security
-    private static final SecureRandom random = new SecureRandom();
-    
+    private static final int MAX_BREACHED_ATTEMPTS = 100;
+
+    // Using SecureRandom instead of Random for better security; one per thread
+    private static final ThreadLocal<RandomSource> random = ThreadLocal.withInitial(RandomSource::new);
+
+    /**
+     * A thread's SecureRandom plus a block of bytes already drawn from it
+     */
+    static class RandomSource {
+        final SecureRandom secureRandom = new SecureRandom();
+        final byte[] block = new byte[1024];
+        int position = block.length;
+
+        /**
+         * @return A uniformly distributed int in [0, bound)
+         */
+        int nextInt(int bound) {
+            if (bound <= 256) {
+                // Bytes at or above limit would make the low indexes more likely
+                int limit = 256 - 256 % bound;
+                while (true) {
+                    int value = nextByte();
+                    if (value < limit) {
+                        return value % bound;
+                    }
+                }
+            }
+            int limit = Integer.MAX_VALUE - Integer.MAX_VALUE % bound;
+            while (true) {
+                int value = (nextByte() << 24 | nextByte() << 16 | nextByte() << 8 | nextByte()) & Integer.MAX_VALUE;
+                if (value < limit) {
+                    return value % bound;
+                }
+            }
+        }
+
+        /**
+         * @return A uniformly distributed double in [0, 1) with 53 random bits
+         */
+        double nextDouble() {
+            long bits = 0;
+            for (int i = 0; i < 7; i++) {
+                bits = bits << 8 | nextByte();
+            }
+            return (bits >>> 3) * 0x1.0p-53;
+        }
+
+        private int nextByte() {
+            if (position == block.length) {
+                secureRandom.nextBytes(block);
+                position = 0;
+            }
+            return block[position++] & 0xff;
+        }
+    }
+
     /**
      * Generates a password with default length of 12 characters
      * @return A secure random password
@@ -25,42 +88,167 @@ public class PasswordGenerator {
     public static String generatePassword() {
         return generatePassword(12);
     }
-    
+
     /**
      * Generates a password with specified length
-     * Uses Fisher-Yates shuffle algorithm to ensure uniform distribution
-     * 
-     * @param length Desired password length (minimum 8)
+     *
+     * @param length Desired password length (raised to 8 or the validator's minimum, at most GenerationPolicy.MAX_LENGTH)
      * @return A secure random password
-     * 
-     * @see https://en.wikipedia.org/wiki/Fisher%E2%80%93Yates_shuffle
      */
     public static String generatePassword(int length) {
-        if (length < 8) length = 8; // Minimum length of 8
-        
-        StringBuilder password = new StringBuilder();
-        
-        // Ensure at least one of each required character type
-        password.append(UPPERCASE.charAt(random.nextInt(UPPERCASE.length())));
-        password.append(LOWERCASE.charAt(random.nextInt(LOWERCASE.length())));
-        password.append(NUMBERS.charAt(random.nextInt(NUMBERS.length())));
-        password.append(SPECIAL.charAt(random.nextInt(SPECIAL.length())));
-        
-        // Fill the rest with random characters
-        String allChars = LOWERCASE + UPPERCASE + NUMBERS + SPECIAL;
-        for (int i = 4; i < length; i++) {
-            password.append(allChars.charAt(random.nextInt(allChars.length())));
+        char[] password = new char[clampLength(length)];
+        fillStandard(password, password.length, random.get());
+        return new String(password);
+    }
+
+    /**
+     * Generates a password following a policy
+     * @param policy A compiled policy, e.g. from GenerationPolicy.named()
+     * @return A secure random password
+     */
+    public static String generatePassword(GenerationPolicy policy) {
+        char[] buffer = new char[policy.getMaxLength()];
+        int length = fillPolicy(policy, buffer, random.get());
+        String password = new String(buffer, 0, length);
+        Arrays.fill(buffer, '\0');
+        return password;
+    }
+
+    /**
+     * Generates many passwords in parallel, one char[] each
+     * @param count Number of passwords
+     * @param length Length of each password (raised to 8 or the validator's minimum, at most GenerationPolicy.MAX_LENGTH)
+     * @return The passwords; callers can wipe each array when done with it
+     */
+    public static char[][] generatePasswords(int count, int length) {
+        char[][] passwords = new char[count][];
+        int size = clampLength(length);
+        IntStream.range(0, count).parallel().forEach(i -> {
+            char[] password = new char[size];
+            fillStandard(password, size, random.get());
+            passwords[i] = password;
+        });
+        return passwords;
+    }
+
+    /**
+     * Generates many passwords following a policy in parallel, one char[] each
+     * @param policy A compiled policy
+     * @param count Number of passwords
+     * @return The passwords; callers can wipe each array when done with it
+     */
+    public static char[][] generatePasswords(GenerationPolicy policy, int count) {
+        char[][] passwords = new char[count][];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            char[] buffer = new char[policy.getMaxLength()];
+            int length = fillPolicy(policy, buffer, random.get());
+            if (length == buffer.length) {
+                passwords[i] = buffer;
+            } else {
+                passwords[i] = Arrays.copyOf(buffer, length);
+                Arrays.fill(buffer, '\0');
+            }
+        });
+        return passwords;
+    }
+
+    /**
+     * Generates passwords in parallel and hands each to the sink as it is made,
+     * without keeping them. Each worker thread reuses one buffer and wipes it at
+     * the end, so the sink may be called from several threads at once and must
+     * copy the array if it needs it after returning.
+     * @param count Number of passwords
+     * @param length Length of each password (raised to 8 or the validator's minimum, at most GenerationPolicy.MAX_LENGTH)
+     * @param sink Receives each password; must be thread-safe
+     */
+    public static void generatePasswords(int count, int length, Consumer<char[]> sink) {
+        int size = clampLength(length);
+        forEachWorker(count, (source, share) -> {
+            char[] buffer = new char[size];
+            for (int i = 0; i < share; i++) {
+                fillStandard(buffer, size, source);
+                sink.accept(buffer);
+            }
+            Arrays.fill(buffer, '\0');
+        });
+    }
+
+    /**
+     * Streams passwords following a policy to the sink, as
+     * generatePasswords(int, int, Consumer) does. A policy with a length range
+     * hands over a fresh array for any password shorter than its maximum.
+     * @param policy A compiled policy
+     * @param count Number of passwords
+     * @param sink Receives each password; must be thread-safe
+     */
+    public static void generatePasswords(GenerationPolicy policy, int count, Consumer<char[]> sink) {
+        forEachWorker(count, (source, share) -> {
+            char[] buffer = new char[policy.getMaxLength()];
+            for (int i = 0; i < share; i++) {
+                int length = fillPolicy(policy, buffer, source);
+                if (length == buffer.length) {
+                    sink.accept(buffer);
+                } else {
+                    char[] password = Arrays.copyOf(buffer, length);
+                    sink.accept(password);
+                    Arrays.fill(password, '\0');
+                }
+            }
+            Arrays.fill(buffer, '\0');
+        });
+    }
+
+    /**
+     * Fills the buffer with a standard password of exactly length characters
+     */
+    private static void fillStandard(char[] buffer, int length, RandomSource source) {
+        for (int attempt = 0; ; attempt++) {
+            GenerationPolicy.STANDARD.fill(buffer, length, source);
+            if (!isBreached(buffer, length, attempt)) {
+                return;
+            }
         }
-        
-        // Shuffle the password using Fisher-Yates algorithm
-        char[] passwordArray = password.toString().toCharArray();
-        for (int i = passwordArray.length - 1; i > 0; i--) {
-            int j = random.nextInt(i + 1);
-            char temp = passwordArray[i];
-            passwordArray[i] = passwordArray[j];
-            passwordArray[j] = temp;
+    }
+
+    /**
+     * Fills the buffer with a password following the policy
+     * @return The password's length
+     */
+    private static int fillPolicy(GenerationPolicy policy, char[] buffer, RandomSource source) {
+        for (int attempt = 0; ; attempt++) {
+            int length = policy.fill(buffer, source);
+            if (!isBreached(buffer, length, attempt)) {
+                return length;
+            }
+        }
+    }
+
+    private static boolean isBreached(char[] buffer, int length, int attempt) {
+        if (!PasswordValidator.standard().isBreached(buffer, length)) {
+            return false;
         }
-        
-        return new String(passwordArray);
+        if (attempt >= MAX_BREACHED_ATTEMPTS) {
+            // Only a policy with very few possible passwords gets here
+            throw new IllegalStateException("Every generated password was found in the breach corpus");
+        }
+        return true;
+    }
+
+    private interface Worker {
+        void run(RandomSource source, int share);
+    }
+
+    /**
+     * Splits count as evenly as possible between one worker per core
+     */
+    private static void forEachWorker(int count, Worker worker) {
+        int workers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), count / 256));
+        IntStream.range(0, workers).parallel().forEach(index ->
+            worker.run(random.get(), count / workers + (index < count % workers ? 1 : 0)));
+    }
+
+    private static int clampLength(int length) {
+        int shortest = Math.max(8, PasswordValidator.standard().getMinLength());
+        return Math.min(Math.max(length, shortest), GenerationPolicy.MAX_LENGTH);
     }
-} 
\ No newline at end of file
+}
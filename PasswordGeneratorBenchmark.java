@@ -0,0 +1,58 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures bulk password generation on this machine, for sizing credential
+ * provisioning runs.
+ *
+ * Runs generatePassword() in a loop on one thread (the pre-bulk way of making
+ * many passwords), then the bulk char[][] and streaming-sink APIs across every
+ * core, and reports passwords per second for each.
+ *
+ * Usage: java PasswordGeneratorBenchmark [count] [length]
+ *
+ * References:
+ * - ForkJoinPool (parallel streams): https://docs.oracle.com/en/java/javase/21/docs/api/java.base/java/util/concurrent/ForkJoinPool.html
+ * - LongAdder: https://docs.oracle.com/en/java/javase/21/docs/api/java.base/java/util/concurrent/atomic/LongAdder.html
+ */
+public class PasswordGeneratorBenchmark {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int length = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        System.out.printf("Generating %d passwords of length %d, %d core(s)%n",
+            count, length, Runtime.getRuntime().availableProcessors());
+
+        // Warm up the JIT so the first run is not measured in the interpreter
+        for (int i = 0; i < 3; i++) {
+            PasswordGenerator.generatePasswords(Math.min(count, 100_000), length, password -> { });
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (PasswordGenerator.generatePassword(length).isEmpty()) {
+                throw new IllegalStateException("empty password");
+            }
+        }
+        report("generatePassword loop", count, start);
+
+        start = System.nanoTime();
+        char[][] passwords = PasswordGenerator.generatePasswords(count, length);
+        report("bulk char[][]", passwords.length, start);
+
+        LongAdder streamed = new LongAdder();
+        start = System.nanoTime();
+        PasswordGenerator.generatePasswords(count, length, password -> streamed.increment());
+        report("streaming sink", streamed.intValue(), start);
+
+        // Every password must still pass validation
+        for (char[] password : passwords) {
+            if (!PasswordValidator.isValid(new String(password))) {
+                throw new IllegalStateException("invalid password generated: " + new String(password));
+            }
+        }
+    }
+
+    private static void report(String label, int count, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-22s %d passwords in %.2f s, %.0f passwords/s%n", label, count, seconds, count / seconds);
+    }
+}
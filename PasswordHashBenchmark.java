@@ -0,0 +1,83 @@
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures login password checks on this machine, for sizing auth capacity.
+ *
+ * Prints the PBKDF2 iteration count that meets a target login latency, then
+ * runs verify() at the configured count (PASSWORD_HASH_ITERATIONS) on one
+ * thread and on every core, reporting latency percentiles, verifies per second
+ * and verifies per second per core.
+ *
+ * Usage: java PasswordHashBenchmark [targetMillis] [secondsPerRun]
+ *
+ * References:
+ * - OWASP password storage: https://cheatsheetseries.owasp.org/cheatsheets/Password_Storage_Cheat_Sheet.html
+ * - Percentiles: https://en.wikipedia.org/wiki/Percentile#The_nearest-rank_method
+ */
+public class PasswordHashBenchmark {
+    public static void main(String[] args) throws Exception {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        int calibrated = PasswordHasher.calibrate(targetMillis);
+        System.out.printf("Calibrated: %d iterations for a %d ms login%n", calibrated, targetMillis);
+        System.out.printf("  set PASSWORD_HASH_ITERATIONS=%d in config.properties to use it%n", calibrated);
+
+        PasswordHasher hasher = PasswordHasher.fromConfig();
+        String stored = hasher.hash("Benchmark!123");
+        System.out.printf("Benchmarking verify at %d iterations, %d core(s)%n", hasher.getIterations(), cores);
+        run(hasher, stored, 1, seconds);
+        if (cores > 1) {
+            run(hasher, stored, cores, seconds);
+        }
+    }
+
+    private static void run(PasswordHasher hasher, String stored, int threads, double seconds) throws Exception {
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        List<Future<long[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline || count == 0) {
+                        long begin = System.nanoTime();
+                        if (!hasher.verify("Benchmark!123", stored)) {
+                            throw new IllegalStateException("verify failed");
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - begin;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long[] all = results.stream().flatMapToLong(future -> {
+            try {
+                return Arrays.stream(future.get());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).sorted().toArray();
+        double perSecond = all.length / elapsed;
+        System.out.printf("%d thread(s): %d verifies, p50 %.1f ms, p99 %.1f ms, %.1f verifies/s, %.1f verifies/s per core%n",
+            threads, all.length, percentile(all, 50), percentile(all, 99), perSecond,
+            perSecond / Math.min(threads, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+}
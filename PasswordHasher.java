@@ -0,0 +1,148 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 hashing for login passwords.
+ *
+ * Stored form: "pbkdf2-sha256$<iterations>$<salt>$<hash>" (salt and hash in Base64),
+ * which contains no commas and so fits in a users.txt field. The iteration count is
+ * the work factor; PASSWORD_HASH_ITERATIONS sets it and calibrate() finds the count
+ * that takes a given time on this machine. A hash made with a different count (or a
+ * password stored before hashing was introduced) reports needsRehash(), so it is
+ * upgraded the next time its owner logs in.
+ *
+ * References:
+ * - PBKDF2: https://en.wikipedia.org/wiki/PBKDF2
+ * - OWASP password storage: https://cheatsheetseries.owasp.org/cheatsheets/Password_Storage_Cheat_Sheet.html
+ * - SecretKeyFactory: https://docs.oracle.com/javase/8/docs/api/javax/crypto/SecretKeyFactory.html
+ */
+public class PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 600000;
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int MIN_ITERATIONS = 10000;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final int iterations;
+
+    public PasswordHasher(int iterations) {
+        this.iterations = Math.max(iterations, MIN_ITERATIONS);
+    }
+
+    /**
+     * @return A hasher using PASSWORD_HASH_ITERATIONS from config.properties
+     */
+    public static PasswordHasher fromConfig() {
+        return new PasswordHasher(AppConfig.getInt("PASSWORD_HASH_ITERATIONS", DEFAULT_ITERATIONS));
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Hashes a password with a fresh random salt
+     * @param password The plaintext password
+     * @return The stored form
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(password, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Checks a password against its stored form, in time independent of where
+     * the two differ
+     * @param password The password typed at login
+     * @param stored A stored hash, or a legacy plaintext password
+     * @return true if they match
+     */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            // Saved before hashing; rehashed by the caller after a successful login
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(derive(password, salt, storedIterations), expected);
+        } catch (IllegalArgumentException e) {
+            Diagnostics.warn("Malformed password hash: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @param stored A stored hash or legacy plaintext password
+     * @return true if it is not a hash at this hasher's work factor
+     */
+    public boolean needsRehash(String stored) {
+        return stored == null || !stored.startsWith(PREFIX + iterations + "$");
+    }
+
+    /**
+     * Measures this machine and returns the iteration count at which one hash
+     * takes about the target time (rounded to a thousand, at least 10,000)
+     * @param targetMillis Desired time for one login check
+     */
+    public static int calibrate(long targetMillis) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        // The HMAC loop speeds up in steps, several times over, as the JIT compiles it.
+        // Keep measuring until the best time per iteration has not improved for two
+        // seconds (or 20 seconds pass); a plateau can last over a second on a slow machine.
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        long settleNanos = 2_000_000_000L;
+        double bestNanosPerIteration = Double.MAX_VALUE;
+        int probe = MIN_ITERATIONS;
+        long lastImprovement = System.nanoTime();
+        while (System.nanoTime() - lastImprovement < settleNanos && System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            derive("calibration", salt, probe);
+            long elapsed = System.nanoTime() - start;
+            // Too short to time reliably
+            if (elapsed < 50_000_000L && probe < Integer.MAX_VALUE / 2) {
+                probe *= 2;
+                continue;
+            }
+            double nanosPerIteration = (double) elapsed / probe;
+            if (nanosPerIteration < bestNanosPerIteration * 0.95) {
+                lastImprovement = System.nanoTime();
+            }
+            bestNanosPerIteration = Math.min(bestNanosPerIteration, nanosPerIteration);
+        }
+        long iterations = (long) (targetMillis * 1_000_000L / bestNanosPerIteration);
+        iterations = Math.round(iterations / 1000.0) * 1000;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(iterations, Integer.MAX_VALUE));
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error hashing password: " + e.getMessage(), e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
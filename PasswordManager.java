@@ -1,7 +1,124 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.Scanner;
+import java.util.function.Consumer;
 
 public class PasswordManager {
     public static void main(String[] args) {
+        // "--server [port]" shares one vault with many clients instead of running the menu
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : AppConfig.getInt("SERVER_PORT", 7070);
+            new VaultServer(port, AppConfig.getInt("SERVER_IDLE_TIMEOUT_MS", 300000)).run();
+            return;
+        }
+        // "--http [port]" serves only the JSON API, without the menu
+        if (args.length > 0 && args[0].equals("--http")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : AppConfig.getInt("HTTP_PORT", 8080);
+            AccountManager accountManager = new AccountManager();
+            VaultHttpServer http = new VaultHttpServer(accountManager, new AuthenticationSystem());
+            try {
+                http.start(port);
+            } catch (IOException e) {
+                System.out.println("Error starting HTTP API: " + e.getMessage());
+                accountManager.close();
+                return;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                http.stop();
+                accountManager.close();
+            }, "http-shutdown"));
+            return;
+        }
+        // "--generate count [length | policy]" prints passwords for bulk provisioning, one per line
+        if (args.length > 1 && args[0].equals("--generate")) {
+            int count = Integer.parseInt(args[1]);
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            try {
+                Consumer<char[]> sink = password -> {
+                    try {
+                        synchronized (out) {
+                            out.write(password);
+                            out.write('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                };
+                if (args.length > 2 && !args[2].matches("\\d+")) {
+                    PasswordGenerator.generatePasswords(GenerationPolicy.named(args[2]), count, sink);
+                } else {
+                    PasswordGenerator.generatePasswords(count, args.length > 2 ? Integer.parseInt(args[2]) : 12, sink);
+                }
+                out.flush();
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Error writing passwords: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error generating passwords: " + e.getMessage());
+            }
+            return;
+        }
+
+        // "--import file.csv [category]" adds another password manager's CSV export to the vault
+        if (args.length > 1 && args[0].equals("--import")) {
+            if (!new AuthenticationSystem().authenticate()) {
+                return;
+            }
+            AccountManager accountManager = new AccountManager();
+            try {
+                MainMenu.printImportReport(CsvImporter.importFile(accountManager, new File(args[1]),
+                    args.length > 2 ? args[2] : null));
+            } catch (IOException e) {
+                System.out.println("Error importing accounts: " + e.getMessage());
+                Diagnostics.stackTrace(e);
+            } finally {
+                accountManager.close();
+            }
+            return;
+        }
+        // "--backup file" writes the vault and users to one encrypted archive; "--restore file" adds them back.
+        // A restore onto a new install, with no users yet, needs no login.
+        if (args.length > 1 && (args[0].equals("--backup") || args[0].equals("--restore"))) {
+            boolean backup = args[0].equals("--backup");
+            AuthenticationSystem auth = new AuthenticationSystem();
+            if ((backup || auth.hasUsers()) && !auth.authenticate()) {
+                return;
+            }
+            AccountManager accountManager = new AccountManager();
+            File archive = new File(args[1]);
+            try {
+                if (backup) {
+                    VaultBackup.Summary summary = VaultBackup.backup(accountManager, auth, archive);
+                    System.out.printf("Backed up %d accounts and %d users to %s: %.1f MB in %d ms (%.1f MB/s), archive %.1f MB%n",
+                        summary.getAccounts(), summary.getUsers(), archive, summary.getContentBytes() / 1e6,
+                        summary.getElapsedMillis(), summary.getMegabytesPerSecond(), summary.getArchiveBytes() / 1e6);
+                } else {
+                    VaultBackup.Summary summary = VaultBackup.restore(archive, accountManager, auth);
+                    System.out.printf("Restored backup of %s: %.1f MB in %d ms (%.1f MB/s, %d ms of it verifying)%n",
+                        new Date(summary.getCreatedMillis()), summary.getContentBytes() / 1e6,
+                        summary.getElapsedMillis(), summary.getMegabytesPerSecond(), summary.getVerifyMillis());
+                    System.out.println("Accounts: " + summary.getAccountsAdded() + " added, " + summary.getAccountsUnchanged()
+                        + " already in the vault, " + summary.getConflictCount() + " name conflicts, "
+                        + summary.getAccountsSkipped() + " skipped (the text vault cannot store commas). Users: "
+                        + summary.getUsersAdded() + " of " + summary.getUsers() + " added.");
+                    for (String name : summary.getConflicts()) {
+                        System.out.println("  " + name + ": already in the vault with different details; not restored");
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Error " + (backup ? "backing up" : "restoring") + ": " + e.getMessage());
+                Diagnostics.stackTrace(e);
+            } finally {
+                accountManager.close();
+            }
+            return;
+        }
+
         AuthenticationSystem auth = new AuthenticationSystem();
         if (auth.authenticate()) {
             MainMenu menu = new MainMenu();
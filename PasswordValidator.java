@@ -1,25 +1,376 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Checks passwords against the configured rules and estimates their strength.
+ *
+ * The rules (minimum length, which character classes are required, which symbols
+ * count as special) come from the VALIDATOR_* settings and are compiled into a
+ * class table for ASCII, so a check is one pass over the password with no
+ * allocation. GenerationPolicy reads the same rules, so generated passwords
+ * always pass.
+ *
+ * With BREACH_CORPUS set, a password found in the breach corpus is invalid
+ * (as NIST SP 800-63B advises) and scored as no stronger than a guess from that
+ * list.
+ *
+ * Strength is an entropy estimate: each character is worth log2 of the pool of
+ * classes the password uses, except one that repeats the previous character or
+ * continues a run like "abc" or "321", which is worth 1 bit. Passwords below
+ * VALIDATOR_WEAK_BITS are reported as weak, with the reasons.
+ *
+ * References:
+ * - Password strength (entropy): https://en.wikipedia.org/wiki/Password_strength#Entropy_as_a_measure_of_password_strength
+ * - NIST SP 800-63B memorized secrets: https://pages.nist.gov/800-63-3/sp800-63b.html#memsecret
+ * - Parallel streams: https://docs.oracle.com/javase/tutorial/collections/streams/parallelism.html
+ */
 public class PasswordValidator {
+    public static final String DEFAULT_SPECIAL = "!@#$%^&*()_+-=[]{}|;:,.<>?";
+
+    static final int UPPER = 0;
+    static final int LOWER = 1;
+    static final int DIGIT = 2;
+    static final int SPECIAL = 3;
+    static final int OTHER = 4;
+    private static final String[] CLASS_NAMES = {"upper case letter", "lower case letter", "number", "special character"};
+    private static final String[] LABELS = {"very weak", "weak", "fair", "strong", "very strong"};
+    // Entropy (bits) at which each label from "weak" upward starts
+    private static final double[] SCORE_BITS = {28, 36, 60, 128};
+
+    private static volatile PasswordValidator standard;
+
+    private final int minLength;
+    private final boolean[] required = new boolean[4];
+    private final String special;
+    private final double weakBits;
+    private final BreachCorpus breaches;
+    // Class of each ASCII character
+    private final byte[] asciiClass = new byte[128];
+    // Number of characters in each class, for the entropy pool
+    private final int[] poolSizes = new int[5];
+
+    /**
+     * @param minLength Shortest valid password
+     * @param requiredClasses Classes a valid password must contain: any of "upper", "lower", "digit", "special"
+     * @param special Characters that count as special
+     * @param weakBits Estimated entropy below which a password is reported as weak
+     */
+    public PasswordValidator(int minLength, Collection<String> requiredClasses, String special, double weakBits) {
+        this(minLength, requiredClasses, special, weakBits, null);
+    }
+
+    /**
+     * @param breaches Breached passwords to reject, or null
+     */
+    public PasswordValidator(int minLength, Collection<String> requiredClasses, String special, double weakBits,
+                             BreachCorpus breaches) {
+        this.minLength = Math.max(minLength, 1);
+        this.breaches = breaches;
+        this.special = special;
+        this.weakBits = weakBits;
+        for (String name : requiredClasses) {
+            switch (name.trim().toLowerCase()) {
+                case "upper": required[UPPER] = true; break;
+                case "lower": required[LOWER] = true; break;
+                case "digit": required[DIGIT] = true; break;
+                case "special": required[SPECIAL] = true; break;
+                case "": break;
+                default: throw new IllegalArgumentException("Unknown character class: " + name);
+            }
+        }
+        for (int c = 0; c < 128; c++) {
+            byte cls;
+            if (c >= 'A' && c <= 'Z') {
+                cls = UPPER;
+            } else if (c >= 'a' && c <= 'z') {
+                cls = LOWER;
+            } else if (c >= '0' && c <= '9') {
+                cls = DIGIT;
+            } else if (special.indexOf(c) >= 0) {
+                cls = SPECIAL;
+            } else {
+                cls = OTHER;
+            }
+            asciiClass[c] = cls;
+            // Printable characters only, for the pool sizes
+            if (c >= ' ' && c < 127) {
+                poolSizes[cls]++;
+            }
+        }
+    }
+
+    /**
+     * @return The validator configured by VALIDATOR_MIN_LENGTH, VALIDATOR_REQUIRE,
+     *         VALIDATOR_SPECIAL, VALIDATOR_WEAK_BITS and BREACH_CORPUS
+     */
+    public static PasswordValidator standard() {
+        PasswordValidator validator = standard;
+        if (validator == null) {
+            synchronized (PasswordValidator.class) {
+                if (standard == null) {
+                    standard = new PasswordValidator(
+                        AppConfig.getInt("VALIDATOR_MIN_LENGTH", 8),
+                        List.of(AppConfig.get("VALIDATOR_REQUIRE", "upper,digit,special").split(",")),
+                        AppConfig.get("VALIDATOR_SPECIAL", DEFAULT_SPECIAL),
+                        AppConfig.getInt("VALIDATOR_WEAK_BITS", 36),
+                        BreachCorpus.configured());
+                }
+                validator = standard;
+            }
+        }
+        return validator;
+    }
+
+    /**
+     * Checks a password against the configured rules
+     */
     public static boolean isValid(String password) {
-        if (password == null || password.length() < 8) {
+        return standard().check(password);
+    }
+
+    /**
+     * The result of evaluating one password
+     */
+    public static class Result {
+        private final boolean valid;
+        private final double entropyBits;
+        private final int score;
+        private final List<String> reasons;
+
+        Result(boolean valid, double entropyBits, int score, List<String> reasons) {
+            this.valid = valid;
+            this.entropyBits = entropyBits;
+            this.score = score;
+            this.reasons = reasons;
+        }
+
+        /** @return true if the password meets the rules */
+        public boolean isValid() {
+            return valid;
+        }
+
+        /** @return Estimated entropy in bits */
+        public double getEntropyBits() {
+            return entropyBits;
+        }
+
+        /** @return 0 (very weak) to 4 (very strong) */
+        public int getScore() {
+            return score;
+        }
+
+        public String getLabel() {
+            return LABELS[score];
+        }
+
+        /** @return Why the password is invalid or weak; empty if it is neither */
+        public List<String> getReasons() {
+            return reasons;
+        }
+    }
+
+    /**
+     * A weak or invalid password found in the vault
+     */
+    public static class Finding {
+        private final Account account;
+        private final Result result;
+
+        Finding(Account account, Result result) {
+            this.account = account;
+            this.result = result;
+        }
+
+        public Account getAccount() {
+            return account;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+    }
+
+    /**
+     * @return true if the password meets the rules, without allocating
+     */
+    public boolean check(String password) {
+        if (password == null || password.length() < minLength) {
             return false;
         }
-        
-        boolean hasCapital = false;
-        boolean hasNumber = false;
-        boolean hasSpecial = false;
-        
-        String specialChars = "!@#$%^&*()_+-=[]{}|;:,.<>?";
-        
-        for (char c : password.toCharArray()) {
-            if (Character.isUpperCase(c)) {
-                hasCapital = true;
-            } else if (Character.isDigit(c)) {
-                hasNumber = true;
-            } else if (specialChars.indexOf(c) >= 0) {
-                hasSpecial = true;
-            }
-        }
-        
-        return hasCapital && hasNumber && hasSpecial;
-    }
-} 
\ No newline at end of file
+        int present = 0;
+        for (int i = 0; i < password.length(); i++) {
+            present |= 1 << classOf(password.charAt(i));
+        }
+        for (int c = 0; c < 4; c++) {
+            if (required[c] && (present & 1 << c) == 0) {
+                return false;
+            }
+        }
+        return breaches == null || !breaches.contains(password);
+    }
+
+    /**
+     * @return true if a breach corpus is configured and contains the password
+     */
+    public boolean isBreached(String password) {
+        return breaches != null && password != null && breaches.contains(password);
+    }
+
+    /**
+     * @return true if a breach corpus is configured and contains the first length characters
+     */
+    public boolean isBreached(char[] password, int length) {
+        return breaches != null && breaches.contains(password, length);
+    }
+
+    /**
+     * Checks a password and estimates its strength
+     */
+    public Result evaluate(String password) {
+        List<String> reasons = new ArrayList<>();
+        if (password == null) {
+            password = "";
+        }
+        int present = 0;
+        int predictable = 0;
+        int repeats = 0;
+        int sequences = 0;
+        int step = 0;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            present |= 1 << classOf(c);
+            if (i == 0) {
+                continue;
+            }
+            int delta = c - password.charAt(i - 1);
+            if (delta == 0) {
+                predictable++;
+                repeats++;
+            } else if ((delta == 1 || delta == -1) && delta == step) {
+                predictable++;
+                sequences++;
+            }
+            step = delta;
+        }
+
+        if (password.length() < minLength) {
+            reasons.add("shorter than " + minLength + " characters");
+        }
+        for (int c = 0; c < 4; c++) {
+            if (required[c] && (present & 1 << c) == 0) {
+                reasons.add("no " + CLASS_NAMES[c]);
+            }
+        }
+        boolean breached = breaches != null && breaches.contains(password);
+        if (breached) {
+            reasons.add("found in breached password list");
+        }
+        boolean valid = reasons.isEmpty();
+        if (repeats > 0) {
+            reasons.add(repeats + " repeated character" + (repeats == 1 ? "" : "s"));
+        }
+        if (sequences > 0) {
+            reasons.add("sequential characters");
+        }
+
+        int pool = 0;
+        for (int c = 0; c < 5; c++) {
+            if ((present & 1 << c) != 0) {
+                pool += poolSizes[c];
+            }
+        }
+        double bits = pool < 2 ? predictable : (password.length() - predictable) * log2(pool) + predictable;
+        if (breached) {
+            // An attacker trying the list in order finds it within this many guesses
+            bits = Math.min(bits, log2(breaches.size()));
+        }
+        int score = 0;
+        while (score < SCORE_BITS.length && bits >= SCORE_BITS[score]) {
+            score++;
+        }
+        if (bits < weakBits) {
+            reasons.add(String.format("about %.0f bits of entropy, below %.0f", bits, weakBits));
+        }
+        return new Result(valid, bits, score, reasons);
+    }
+
+    /**
+     * @return true if the result breaks a rule or falls below the weak threshold
+     */
+    public boolean isWeak(Result result) {
+        return !result.isValid() || result.getEntropyBits() < weakBits;
+    }
+
+    /**
+     * Evaluates every password in the vault in parallel
+     * @return The weak or invalid ones, weakest first
+     */
+    public List<Finding> findWeak(AccountManager accountManager) {
+        return findWeak(accountManager.viewAccounts());
+    }
+
+    /**
+     * Evaluates the accounts' passwords in parallel
+     * @return The weak or invalid ones, weakest first
+     */
+    public List<Finding> findWeak(Collection<Account> accounts) {
+        return accounts.parallelStream()
+            .map(account -> new Finding(account, evaluate(account.getPassword())))
+            .filter(finding -> isWeak(finding.getResult()))
+            .sorted(Comparator.comparingDouble((Finding finding) -> finding.getResult().getEntropyBits())
+                .thenComparing(finding -> finding.getAccount().getAccountName()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return One line per rule, for showing users what a password needs
+     */
+    public List<String> describeRules() {
+        List<String> rules = new ArrayList<>();
+        rules.add("At least " + minLength + " characters");
+        for (int c = 0; c < 4; c++) {
+            if (required[c]) {
+                rules.add("At least 1 " + CLASS_NAMES[c] + (c == SPECIAL ? " (" + special + ")" : ""));
+            }
+        }
+        return rules;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @param characterClass UPPER, LOWER, DIGIT or SPECIAL
+     */
+    public boolean requires(int characterClass) {
+        return required[characterClass];
+    }
+
+    public String getSpecial() {
+        return special;
+    }
+
+    private int classOf(char c) {
+        if (c < 128) {
+            return asciiClass[c];
+        }
+        if (Character.isUpperCase(c)) {
+            return UPPER;
+        }
+        if (Character.isLowerCase(c)) {
+            return LOWER;
+        }
+        if (Character.isDigit(c)) {
+            return DIGIT;
+        }
+        return special.indexOf(c) >= 0 ? SPECIAL : OTHER;
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Vault stored as one encrypted shard per category plus an encrypted manifest
+ * (directory "vault/").
+ *
+ * Each shard is a BinaryVault file holding one category. The manifest lists every
+ * category with its shard file, account count and the sorted hash codes of its
+ * account names, so the program can start by reading only the manifest, load a
+ * category the first time it is used, and find which shard might hold a given
+ * account name without opening the others.
+ *
+ * Saves are copy-on-write: changed categories go to new shard files, then the
+ * manifest is atomically replaced, then the old shard files are deleted. A crash
+ * at any point leaves a manifest that points at complete shards.
+ *
+ * Manifest layout: magic "PMVM" (4 bytes), version (int), then an AES-GCM sealed
+ * stream (see EncryptionUtil.sealedOutputStream) containing next shard id (int),
+ * entry count (int) and per entry: category (UTF), shard id (int),
+ * account count (int), hash count (int), name hashes (int each).
+ *
+ * References:
+ * - Sharding: https://en.wikipedia.org/wiki/Shard_(database_architecture)
+ * - Copy-on-write: https://en.wikipedia.org/wiki/Copy-on-write#In_computer_storage
+ */
+public class ShardedVault {
+    private static final int MAGIC = 0x504D564D; // "PMVM"
+    private static final int VERSION = 1;
+    private static final String MANIFEST = "manifest";
+
+    private final File dir;
+    private final Map<String, Shard> shards = new HashMap<>();
+    private int nextId = 1;
+
+    /**
+     * Manifest entry for one category
+     */
+    private static class Shard {
+        final int id;
+        final int count;
+        final int[] nameHashes; // sorted
+
+        Shard(int id, int count, int[] nameHashes) {
+            this.id = id;
+            this.count = count;
+            this.nameHashes = nameHashes;
+        }
+    }
+
+    /**
+     * Opens a sharded vault, reading only its manifest
+     * @param dir The vault directory; created on first save if missing
+     * @throws IOException If the manifest exists but cannot be read or verified
+     */
+    public ShardedVault(File dir) throws IOException {
+        this.dir = dir;
+        File manifest = new File(dir, MANIFEST);
+        if (manifest.exists()) {
+            readManifest(manifest);
+        }
+    }
+
+    /**
+     * @return true if a manifest has been written before
+     */
+    public boolean exists() {
+        return new File(dir, MANIFEST).exists();
+    }
+
+    /**
+     * @return Every category stored in the vault
+     */
+    public synchronized Set<String> categories() {
+        return new HashSet<>(shards.keySet());
+    }
+
+    /**
+     * Checks the manifest's name hashes. False means the category certainly
+     * does not contain the account; true means it might.
+     */
+    public synchronized boolean mightContain(String category, String accountName) {
+        Shard shard = shards.get(category);
+        return shard != null && Arrays.binarySearch(shard.nameHashes, accountName.hashCode()) >= 0;
+    }
+
+    /**
+     * Reads one category's shard
+     * @param category The category to load
+     * @param lazyPasswords Keep passwords encrypted until read (see BinaryVault)
+     * @param sink Receives each account
+     * @return Number of accounts read
+     * @throws IOException If the shard cannot be read
+     */
+    public int loadCategory(String category, boolean lazyPasswords, Consumer<Account> sink) throws IOException {
+        Shard shard;
+        synchronized (this) {
+            shard = shards.get(category);
+        }
+        if (shard == null) {
+            return 0;
+        }
+        return BinaryVault.read(shardFile(shard.id), lazyPasswords, sink);
+    }
+
+    /**
+     * Writes the given categories and updates the manifest. Categories not in
+     * the map are left as they are on disk.
+     * @param changed Category -> its complete new contents; an empty list removes the category
+     * @throws IOException If a shard or the manifest cannot be written
+     */
+    public synchronized void save(Map<String, List<Account>> changed) throws IOException {
+        if (changed.isEmpty()) {
+            return;
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        Map<String, Shard> updated = new HashMap<>(shards);
+        List<File> obsolete = new ArrayList<>();
+        for (Map.Entry<String, List<Account>> entry : changed.entrySet()) {
+            Shard old = updated.remove(entry.getKey());
+            if (old != null) {
+                obsolete.add(shardFile(old.id));
+            }
+            List<Account> accounts = entry.getValue();
+            if (accounts.isEmpty()) {
+                continue;
+            }
+            int id = nextId++;
+            BinaryVault.write(shardFile(id), accounts);
+            int[] hashes = new int[accounts.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = accounts.get(i).getAccountName().hashCode();
+            }
+            Arrays.sort(hashes);
+            updated.put(entry.getKey(), new Shard(id, accounts.size(), hashes));
+        }
+
+        writeManifest(updated);
+        shards.clear();
+        shards.putAll(updated);
+        for (File file : obsolete) {
+            file.delete();
+        }
+        if (Diagnostics.isDebugEnabled()) {
+            Diagnostics.debug("Saved {} changed categories to {}", changed.size(), dir);
+        }
+    }
+
+    private File shardFile(int id) {
+        return new File(dir, String.format("shard-%06d.vault", id));
+    }
+
+    private void writeManifest(Map<String, Shard> entries) throws IOException {
+        File manifest = new File(dir, MANIFEST);
+        File temp = new File(dir, MANIFEST + ".tmp");
+        byte[] header = header();
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            fileOut.write(header);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    EncryptionUtil.sealedOutputStream(fileOut, header)))) {
+                out.writeInt(nextId);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Shard> entry : entries.entrySet()) {
+                    Shard shard = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(shard.id);
+                    out.writeInt(shard.count);
+                    out.writeInt(shard.nameHashes.length);
+                    for (int hash : shard.nameHashes) {
+                        out.writeInt(hash);
+                    }
+                }
+            }
+        }
+        FileManager.replaceAtomically(temp, manifest);
+    }
+
+    private void readManifest(File manifest) throws IOException {
+        byte[] header = header();
+        try (InputStream fileIn = new BufferedInputStream(new FileInputStream(manifest))) {
+            byte[] actual = fileIn.readNBytes(header.length);
+            if (!Arrays.equals(actual, header)) {
+                throw new IOException("Not a vault manifest: " + manifest);
+            }
+            Map<String, Shard> entries = new HashMap<>();
+            int id;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    EncryptionUtil.sealedInputStream(fileIn, header)))) {
+                id = in.readInt();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String category = in.readUTF();
+                    int shardId = in.readInt();
+                    int accounts = in.readInt();
+                    int[] hashes = new int[in.readInt()];
+                    for (int j = 0; j < hashes.length; j++) {
+                        hashes[j] = in.readInt();
+                    }
+                    entries.put(category, new Shard(shardId, accounts, hashes));
+                }
+                // Reaching the end verifies the authentication tag
+                if (in.read() != -1) {
+                    throw new IOException("Unexpected data after manifest entries");
+                }
+            } catch (EOFException e) {
+                throw new IOException("Vault manifest is truncated", e);
+            }
+            nextId = id;
+            shards.putAll(entries);
+        }
+    }
+
+    private static byte[] header() {
+        return new byte[] {
+            (byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16), (byte) (MAGIC >>> 8), (byte) MAGIC,
+            0, 0, 0, (byte) VERSION
+        };
+    }
+}
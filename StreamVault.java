@@ -0,0 +1,117 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Whole-vault authenticated encryption (passwords.gcm).
+ *
+ * Layout:
+ *   magic "PMVS" (4 bytes), version (int), 12-byte random IV,
+ *   then one AES-GCM ciphertext of: record count (int) and, per account,
+ *   plaintext length (int) + AccountCodec record, followed by the 16-byte tag.
+ *
+ * The whole vault costs one cipher initialization and one pass, instead of a
+ * separate ECB encryption, padding and Base64 per account. The header is
+ * authenticated along with the data, so any modified, truncated or reordered
+ * byte makes the load fail instead of producing wrong accounts.
+ *
+ * References:
+ * - AES-GCM in Java: https://www.baeldung.com/java-aes-encryption-decryption#gcm
+ * - CipherOutputStream: https://docs.oracle.com/javase/8/docs/api/javax/crypto/CipherOutputStream.html
+ */
+public class StreamVault {
+    private static final int MAGIC = 0x504D5653; // "PMVS"
+    private static final int VERSION = 1;
+
+    /**
+     * Writes all accounts as one sealed stream, replacing the old file only once
+     * the new one is complete
+     * @param file Destination file
+     * @param accounts Accounts to store
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(File file, Collection<Account> accounts) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        AccountCodec codec = new AccountCodec();
+        byte[] header = header();
+
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            fileOut.write(header);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    EncryptionUtil.sealedOutputStream(fileOut, header), 64 * 1024))) {
+                out.writeInt(accounts.size());
+                for (Account account : accounts) {
+                    int length = codec.encode(account);
+                    out.writeInt(length);
+                    out.write(codec.buffer(), 0, length);
+                }
+            }
+        }
+        FileManager.replaceAtomically(temp, file);
+    }
+
+    /**
+     * Decrypts and verifies the vault. Accounts are only handed to the sink after
+     * the authentication tag has been checked, so a tampered file adds nothing.
+     * @param file The sealed vault
+     * @param sink Receives each account in file order
+     * @return Number of accounts read
+     * @throws IOException If the file is not a sealed vault or fails authentication
+     */
+    public static int read(File file, Consumer<Account> sink) throws IOException {
+        byte[] header = header();
+        try (InputStream fileIn = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            byte[] actual = new byte[header.length];
+            if (fileIn.readNBytes(actual, 0, actual.length) != actual.length
+                    || readInt(actual, 0) != MAGIC) {
+                throw new IOException("Not a sealed vault file: " + file);
+            }
+            if (readInt(actual, 4) != VERSION) {
+                throw new IOException("Unsupported sealed vault version " + readInt(actual, 4));
+            }
+
+            // Accounts are held back until the end of the stream, where the tag is
+            // checked; a failed check throws and nothing reaches the sink
+            List<Account> accounts;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    EncryptionUtil.sealedInputStream(fileIn, header), 64 * 1024))) {
+                int count = in.readInt();
+                accounts = new ArrayList<>(Math.min(count, 1 << 16));
+                byte[] record = new byte[256];
+                for (int i = 0; i < count; i++) {
+                    int length = in.readInt();
+                    if (length < 0) {
+                        throw new EOFException("negative record length");
+                    }
+                    if (record.length < length) {
+                        record = new byte[length * 2];
+                    }
+                    in.readFully(record, 0, length);
+                    accounts.add(AccountCodec.decode(ByteBuffer.wrap(record, 0, length)));
+                }
+                if (in.read() != -1) {
+                    throw new IOException("Unexpected data after the last record");
+                }
+            }
+            accounts.forEach(sink);
+            return accounts.size();
+        } catch (EOFException | IllegalArgumentException e) {
+            throw new IOException("Sealed vault is corrupt: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] header() {
+        return new byte[] {
+            (byte) (MAGIC >>> 24), (byte) (MAGIC >>> 16), (byte) (MAGIC >>> 8), (byte) MAGIC,
+            0, 0, 0, (byte) VERSION
+        };
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+            | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+    }
+}
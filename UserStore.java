@@ -0,0 +1,535 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Indexed store for user profiles (users.txt plus users.idx).
+ *
+ * users.txt keeps its original format: one encrypted profile per line. It is
+ * only ever appended to; registering a user adds one line, and a changed
+ * profile is appended again, superseding the older line.
+ *
+ * users.idx is an open-addressing hash table, memory-mapped, mapping a hash of
+ * each username to the byte offset of its newest line. A login decrypts only
+ * the lines whose hash matches instead of the whole file. The hash is taken
+ * from the encrypted username, so the index reveals nothing without USER_KEY.
+ *
+ * Index layout: magic "PMUI" (4 bytes), version (int), slot count (int),
+ * live users (int), superseded lines (int), users.txt length covered (long),
+ * 4 bytes padding, then per slot: hash (int) + offset + 1 (long, 0 = empty).
+ *
+ * Lines appended after the covered length (e.g. after a crash) are indexed on
+ * open; a missing or damaged index is rebuilt from users.txt. Once superseded
+ * lines outnumber live ones (and pass USERS_COMPACT_THRESHOLD), both files are
+ * rewritten with only the newest line per user.
+ *
+ * Lookups share a read lock and run in parallel (positional reads and absolute
+ * gets on the mapping do not move any shared position); appends, growth and
+ * compaction take the write lock.
+ *
+ * References:
+ * - Open addressing: https://en.wikipedia.org/wiki/Open_addressing
+ * - Log-structured storage: https://en.wikipedia.org/wiki/Log-structured_merge-tree
+ * - MappedByteBuffer: https://docs.oracle.com/javase/8/docs/api/java/nio/MappedByteBuffer.html
+ * - ReentrantReadWriteLock: https://docs.oracle.com/javase/8/docs/api/java/util/concurrent/locks/ReentrantReadWriteLock.html
+ */
+public class UserStore {
+    private static final int MAGIC = 0x504D5549; // "PMUI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int SLOT_BYTES = 12;
+    private static final int MIN_SLOTS = 1024;
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private final File dataFile;
+    private final File indexFile;
+    private final int compactThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel data;
+    private MappedByteBuffer index;
+    private int slots;
+    private int live;
+    private int dead;
+
+    /**
+     * Opens the store, bringing the index up to date with the data file
+     * @param dataFile users.txt
+     * @param indexFile users.idx
+     * @param compactThreshold Superseded lines tolerated before compaction is considered
+     * @throws IOException If either file cannot be opened
+     */
+    public UserStore(File dataFile, File indexFile, int compactThreshold) throws IOException {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        this.compactThreshold = compactThreshold;
+        finishInterruptedCompaction();
+        this.data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        long covered = openIndex();
+        if (covered < 0) {
+            Diagnostics.info("Rebuilding user index from {}", dataFile);
+            // Lines are roughly 100 bytes; sizing up front avoids repeated growth
+            createIndex(indexFile, slotsFor((int) Math.min(data.size() / 64, Integer.MAX_VALUE / 2)));
+            covered = 0;
+        }
+        if (covered < data.size()) {
+            indexLines(covered);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Looks up one user, decrypting only lines whose index hash matches
+     * @return The profile, or null if there is no such user
+     */
+    public UserProfile find(String username) throws IOException {
+        int hash = keyHash(username);
+        lock.readLock().lock();
+        try {
+            int mask = slots - 1;
+            for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+                long offset = slotOffset(i);
+                if (offset < 0) {
+                    return null;
+                }
+                if (slotHash(i) == hash) {
+                    UserProfile user = parse(readLine(offset));
+                    if (user != null && user.getUsername().equals(username)) {
+                        return user;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a profile; any earlier profile with the same username is superseded
+     */
+    public void save(UserProfile user) throws IOException {
+        saveAll(List.of(user));
+    }
+
+    /**
+     * Appends several profiles with one write and one sync, as save() does for one
+     */
+    public void saveAll(List<UserProfile> users) throws IOException {
+        if (users.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(users.size() * 128);
+        int[] starts = new int[users.size()];
+        for (int i = 0; i < users.size(); i++) {
+            starts[i] = lines.size();
+            lines.write(encodeLine(users.get(i)));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        lock.writeLock().lock();
+        try {
+            long offset = data.size();
+            while (buffer.hasRemaining()) {
+                data.write(buffer, offset + buffer.position());
+            }
+            data.force(false);
+
+            for (int i = 0; i < users.size(); i++) {
+                insert(users.get(i).getUsername(), offset + starts[i]);
+            }
+            index.force();
+            writeHeader(data.size());
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hands every user's newest profile to the sink, in registration order.
+     * Only the lines the index points at are read, so superseded lines cost nothing.
+     * @return Number of users
+     */
+    public int forEach(Consumer<UserProfile> sink) throws IOException {
+        lock.readLock().lock();
+        try {
+            long[] offsets = new long[live];
+            int count = 0;
+            for (int i = 0; i < slots; i++) {
+                long offset = slotOffset(i);
+                if (offset >= 0) {
+                    offsets[count++] = offset;
+                }
+            }
+            Arrays.sort(offsets, 0, count);
+            int read = 0;
+            for (int i = 0; i < count; i++) {
+                UserProfile user = parse(readLine(offsets[i]));
+                if (user != null) {
+                    sink.accept(user);
+                    read++;
+                }
+            }
+            return read;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of distinct users
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites users.txt with only the newest line per user, in file order,
+     * and builds a matching index. Lines are copied without decrypting them.
+     */
+    public void compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            compactLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void compactLocked() throws IOException {
+        int[] hashes = new int[live];
+        long[] offsets = new long[live];
+        int count = 0;
+        for (int i = 0; i < slots; i++) {
+            long offset = slotOffset(i);
+            if (offset >= 0) {
+                hashes[count] = slotHash(i);
+                offsets[count++] = offset;
+            }
+        }
+        // Keep registration order, which is also the order users.txt is read in
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> offsets[i]));
+
+        File compactData = new File(dataFile.getPath() + COMPACT_SUFFIX);
+        File compactIndex = new File(indexFile.getPath() + COMPACT_SUFFIX);
+        long[] newOffsets = new long[count];
+        try (FileOutputStream fileOut = new FileOutputStream(compactData);
+             BufferedOutputStream out = new BufferedOutputStream(fileOut, 64 * 1024)) {
+            long position = 0;
+            for (int i = 0; i < count; i++) {
+                byte[] line = (readLine(offsets[order[i]]) + "\n").getBytes(StandardCharsets.US_ASCII);
+                newOffsets[order[i]] = position;
+                out.write(line);
+                position += line.length;
+            }
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+
+        int previousDead = dead;
+        // From here on the in-memory index is the new one, mapped from users.idx.compact
+        MappedByteBuffer newIndex = createIndex(compactIndex, slotsFor(count));
+        for (int i = 0; i < count; i++) {
+            putSlot(hashes[i], newOffsets[i]);
+        }
+        live = count;
+        dead = 0;
+        writeHeader(compactData.length());
+        newIndex.force();
+
+        // Both files are complete; if the second rename is interrupted, the next open finishes it
+        data.close();
+        FileManager.replaceAtomically(compactData, dataFile);
+        FileManager.replaceAtomically(compactIndex, indexFile);
+        data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (Diagnostics.isInfoEnabled()) {
+            Diagnostics.info("Compacted {}: dropped {} superseded lines", dataFile, previousDead);
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (dead > compactThreshold && dead > live) {
+            compactLocked();
+        }
+    }
+
+    /**
+     * Compaction renames the new users.txt into place, then the new index. A lone
+     * users.idx.compact means it stopped between the two, so the index must follow.
+     * Any other leftovers are from an unfinished write and the old pair still stands.
+     */
+    private void finishInterruptedCompaction() throws IOException {
+        File compactData = new File(dataFile.getPath() + COMPACT_SUFFIX);
+        File compactIndex = new File(indexFile.getPath() + COMPACT_SUFFIX);
+        if (compactIndex.exists() && !compactData.exists()) {
+            FileManager.replaceAtomically(compactIndex, indexFile);
+        } else {
+            compactData.delete();
+            compactIndex.delete();
+        }
+    }
+
+    /**
+     * Maps the existing index if it is intact
+     * @return The data length it covers, or -1 if it must be rebuilt
+     */
+    private long openIndex() throws IOException {
+        if (!indexFile.exists() || indexFile.length() < HEADER_BYTES) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int slotCount = mapped.getInt(8);
+            long covered = mapped.getLong(20);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                    || slotCount < MIN_SLOTS || Integer.bitCount(slotCount) != 1
+                    || channel.size() != HEADER_BYTES + (long) slotCount * SLOT_BYTES
+                    || covered > data.size() || !endsLine(covered)) {
+                return -1;
+            }
+            index = mapped;
+            slots = slotCount;
+            live = mapped.getInt(12);
+            dead = mapped.getInt(16);
+            return covered;
+        }
+    }
+
+    private boolean endsLine(long position) throws IOException {
+        if (position == 0) {
+            return true;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return data.read(last, position - 1) == 1 && last.get(0) == '\n';
+    }
+
+    /**
+     * Creates an empty index file and makes it the current index
+     */
+    private MappedByteBuffer createIndex(File file, int slotCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            index = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) slotCount * SLOT_BYTES);
+        }
+        slots = slotCount;
+        live = 0;
+        dead = 0;
+        index.putInt(0, MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(8, slotCount);
+        writeHeader(0);
+        return index;
+    }
+
+    private void writeHeader(long covered) {
+        index.putInt(12, live);
+        index.putInt(16, dead);
+        index.putLong(20, covered);
+    }
+
+    /**
+     * Indexes every line from the given offset to the end of users.txt
+     */
+    private void indexLines(long from) throws IOException {
+        int added = 0;
+        long offset = from;
+        try (FileInputStream fileIn = new FileInputStream(dataFile);
+             InputStream in = new BufferedInputStream(fileIn, 64 * 1024)) {
+            fileIn.getChannel().position(from);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                UserProfile user = parse(line.toString(StandardCharsets.US_ASCII));
+                if (user != null) {
+                    insert(user.getUsername(), offset);
+                    added++;
+                }
+                offset += line.size() + 1;
+                line.reset();
+            }
+        }
+        index.force();
+        writeHeader(offset);
+        if (Diagnostics.isDebugEnabled()) {
+            Diagnostics.debug("Indexed {} user records after offset {}", added, from);
+        }
+    }
+
+    /**
+     * Points the username's slot at a new line, growing the table first if needed
+     */
+    private void insert(String username, long offset) throws IOException {
+        if ((live + 1) * 10L > slots * 6L) {
+            grow();
+        }
+        int hash = keyHash(username);
+        int mask = slots - 1;
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+            long existing = slotOffset(i);
+            if (existing < 0) {
+                setSlot(i, hash, offset);
+                live++;
+                return;
+            }
+            if (slotHash(i) == hash) {
+                UserProfile user = parse(readLine(existing));
+                if (user == null || user.getUsername().equals(username)) {
+                    if (existing != offset) {
+                        setSlot(i, hash, offset);
+                        dead++;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Doubles the table, moving slots by their stored hash without touching users.txt
+     */
+    private void grow() throws IOException {
+        int oldSlots = slots;
+        int[] hashes = new int[live];
+        long[] offsets = new long[live];
+        int count = 0;
+        for (int i = 0; i < oldSlots; i++) {
+            long offset = slotOffset(i);
+            if (offset >= 0) {
+                hashes[count] = slotHash(i);
+                offsets[count++] = offset;
+            }
+        }
+        int liveCount = live;
+        int deadCount = dead;
+        long covered = index.getLong(20);
+
+        File temp = new File(indexFile.getPath() + ".tmp");
+        createIndex(temp, oldSlots * 2);
+        for (int i = 0; i < count; i++) {
+            putSlot(hashes[i], offsets[i]);
+        }
+        live = liveCount;
+        dead = deadCount;
+        writeHeader(covered);
+        index.force();
+        FileManager.replaceAtomically(temp, indexFile);
+        if (Diagnostics.isDebugEnabled()) {
+            Diagnostics.debug("Grew user index to {} slots", slots);
+        }
+    }
+
+    /**
+     * Places a known-distinct entry into the first free slot of its probe sequence
+     */
+    private void putSlot(int hash, long offset) {
+        int mask = slots - 1;
+        int i = spread(hash) & mask;
+        while (slotOffset(i) >= 0) {
+            i = (i + 1) & mask;
+        }
+        setSlot(i, hash, offset);
+    }
+
+    private int slotHash(int slot) {
+        return index.getInt(HEADER_BYTES + slot * SLOT_BYTES);
+    }
+
+    /**
+     * @return The line offset stored in the slot, or -1 if it is empty
+     */
+    private long slotOffset(int slot) {
+        return index.getLong(HEADER_BYTES + slot * SLOT_BYTES + 4) - 1;
+    }
+
+    private void setSlot(int slot, int hash, long offset) {
+        index.putInt(HEADER_BYTES + slot * SLOT_BYTES, hash);
+        index.putLong(HEADER_BYTES + slot * SLOT_BYTES + 4, offset + 1);
+    }
+
+    private String readLine(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        while (true) {
+            int read = data.read(buffer, offset + buffer.position());
+            for (int i = 0; i < buffer.position(); i++) {
+                if (buffer.get(i) == '\n') {
+                    return trimmed(buffer, i);
+                }
+            }
+            if (read <= 0) {
+                return trimmed(buffer, buffer.position());
+            }
+            if (!buffer.hasRemaining()) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            }
+        }
+    }
+
+    private static String trimmed(ByteBuffer buffer, int end) {
+        if (end > 0 && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        return new String(buffer.array(), 0, end, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] encodeLine(UserProfile user) {
+        String record = EncryptionUtil.encryptUser(String.format("%s,%s,%s,%s,%s",
+            user.getUsername(),
+            user.getPassword(),
+            user.getFirstName(),
+            user.getLastName(),
+            user.getPasswordHint()
+        ));
+        return (record + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static UserProfile parse(String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        String decryptedLine = EncryptionUtil.decryptUser(line);
+        if (decryptedLine == null) {
+            return null;
+        }
+        String[] parts = decryptedLine.split(",");
+        if (parts.length != 5) {
+            return null;
+        }
+        return new UserProfile(parts[0], parts[1], parts[2], parts[3], parts[4]);
+    }
+
+    private static int keyHash(String username) {
+        return EncryptionUtil.encryptUser(username).hashCode();
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int slotsFor(int users) {
+        int slotCount = MIN_SLOTS;
+        while (slotCount * 6L < users * 10L) {
+            slotCount <<= 1;
+        }
+        return slotCount;
+    }
+}
@@ -0,0 +1,381 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Backup archive of the vault and the user store in one compressed, encrypted file.
+ *
+ * Layout:
+ *   magic "PMBK" (4 bytes), version (int), creation time (long, epoch millis),
+ *   then an EncryptionUtil.segmentedOutputStream under the password key, with
+ *   those 16 bytes as authenticated header, holding a Deflate stream of:
+ *     per account: 1 (byte), length (int), AccountCodec record
+ *     per user:    2 (byte), username, password hash, first name, last name,
+ *                  hint (writeUTF each)
+ *     end:         0 (byte), account count (int), user count (int),
+ *                  CRC32C of every byte before it (long)
+ *
+ * Records are written as they are read from AccountManager (one category at a
+ * time) and UserStore, and read back the same way, so neither side builds the
+ * archive in memory. Compressing before encrypting is what makes compression
+ * possible at all. Every 64 KB segment carries its own GCM tag, so a restore
+ * verifies as it streams; the counts and checksum at the end confirm the whole
+ * archive was written and read back in full.
+ *
+ * A restore reads the archive twice: once to verify all of it, then again to add
+ * the records, so a damaged archive changes nothing. Accounts go through the
+ * same batched path as CsvImporter, and the vault is saved once at the end.
+ *
+ * References:
+ * - DeflaterOutputStream: https://docs.oracle.com/javase/8/docs/api/java/util/zip/DeflaterOutputStream.html
+ * - CRC32C: https://docs.oracle.com/javase/9/docs/api/java/util/zip/CRC32C.html
+ * - Online AEAD (STREAM segments): https://eprint.iacr.org/2015/189.pdf
+ */
+public class VaultBackup {
+    private static final int MAGIC = 0x504D424B; // "PMBK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int END = 0;
+    private static final int ACCOUNT = 1;
+    private static final int USER = 2;
+    // Four fields of at most 0xFFFF bytes, each with its length prefix
+    private static final int MAX_RECORD_BYTES = 4 * (0xFFFF + 2);
+    // Conflicting account names listed in a restore summary; any more are only counted
+    private static final int MAX_LISTED = 100;
+
+    /**
+     * What a backup, verification or restore covered
+     */
+    public static class Summary {
+        private final long createdMillis;
+        private int accounts;
+        private int users;
+        private long contentBytes;
+        private long archiveBytes;
+        private long elapsedMillis;
+        private long verifyMillis;
+        private int accountsAdded;
+        private int accountsUnchanged;
+        private int accountsSkipped;
+        private final List<String> conflicts = new ArrayList<>();
+        private int conflictCount;
+        private int usersAdded;
+
+        Summary(long createdMillis) {
+            this.createdMillis = createdMillis;
+        }
+
+        /** @return When the backup was made, in epoch milliseconds */
+        public long getCreatedMillis() {
+            return createdMillis;
+        }
+
+        /** @return Accounts in the archive */
+        public int getAccounts() {
+            return accounts;
+        }
+
+        /** @return Users in the archive */
+        public int getUsers() {
+            return users;
+        }
+
+        /** @return Size of the records before compression and encryption */
+        public long getContentBytes() {
+            return contentBytes;
+        }
+
+        public long getArchiveBytes() {
+            return archiveBytes;
+        }
+
+        /** @return Time for the whole operation, including a restore's verification pass */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /** @return Time a restore spent verifying the archive before adding anything */
+        public long getVerifyMillis() {
+            return verifyMillis;
+        }
+
+        /** @return Uncompressed megabytes (10^6 bytes) per second */
+        public double getMegabytesPerSecond() {
+            return contentBytes / 1e6 / Math.max(elapsedMillis, 1) * 1000;
+        }
+
+        public int getAccountsAdded() {
+            return accountsAdded;
+        }
+
+        /** @return Accounts already in the vault exactly as backed up */
+        public int getAccountsUnchanged() {
+            return accountsUnchanged;
+        }
+
+        /** @return Accounts not restored because the vault format cannot store them */
+        public int getAccountsSkipped() {
+            return accountsSkipped;
+        }
+
+        /** @return Accounts not restored because a different account has the name */
+        public int getConflictCount() {
+            return conflictCount;
+        }
+
+        /** @return Names of the conflicting accounts, up to the first 100 */
+        public List<String> getConflicts() {
+            return conflicts;
+        }
+
+        /** @return Users restored; usernames already registered are skipped */
+        public int getUsersAdded() {
+            return usersAdded;
+        }
+    }
+
+    /**
+     * Writes every account and user to a new archive, replacing the old file only
+     * once the new one is complete
+     * @param accountManager The vault
+     * @param auth The user store
+     * @param archive Destination file
+     * @return Counts, sizes and timing
+     * @throws IOException If a store cannot be read or the archive cannot be written
+     */
+    public static Summary backup(AccountManager accountManager, AuthenticationSystem auth, File archive) throws IOException {
+        long start = System.nanoTime();
+        Summary summary = new Summary(System.currentTimeMillis());
+        byte[] header = header(summary.createdMillis);
+        File temp = new File(archive.getPath() + ".tmp");
+        Deflater deflater = new Deflater(AppConfig.getInt("BACKUP_COMPRESSION_LEVEL", Deflater.BEST_SPEED));
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+                OutputStream buffered = new BufferedOutputStream(fileOut, 64 * 1024);
+                buffered.write(header);
+                // The checksum sits above the buffer, so at any point it covers exactly the bytes written
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(new DeflaterOutputStream(
+                    EncryptionUtil.segmentedOutputStream(buffered, header), deflater, 64 * 1024), 64 * 1024), new CRC32C());
+                try (DataOutputStream out = new DataOutputStream(checked)) {
+                    AccountCodec codec = new AccountCodec();
+                    for (String category : accountManager.getAllCategories()) {
+                        for (Account account : accountManager.getAccountsByCategory(category)) {
+                            int length = codec.encode(account);
+                            out.writeByte(ACCOUNT);
+                            out.writeInt(length);
+                            out.write(codec.buffer(), 0, length);
+                            summary.accounts++;
+                        }
+                    }
+                    summary.users = auth.forEachUser(user -> writeUser(out, user));
+                    out.writeByte(END);
+                    out.writeInt(summary.accounts);
+                    out.writeInt(summary.users);
+                    out.writeLong(checked.getChecksum().getValue());
+                }
+            }
+            summary.contentBytes = deflater.getBytesRead();
+            FileManager.replaceAtomically(temp, archive);
+        } catch (UncheckedIOException e) {
+            temp.delete();
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        } finally {
+            deflater.end();
+        }
+        summary.archiveBytes = archive.length();
+        summary.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        if (Diagnostics.isInfoEnabled()) {
+            Diagnostics.info("Backed up {} accounts in {} ms", summary.accounts, summary.elapsedMillis);
+        }
+        return summary;
+    }
+
+    /**
+     * Reads and checks the whole archive without changing anything
+     * @return Counts, sizes and timing
+     * @throws IOException If the archive is not a backup, was modified or truncated,
+     *         or was made with other keys
+     */
+    public static Summary verify(File archive) throws IOException {
+        return read(archive, null, null);
+    }
+
+    /**
+     * Verifies the archive, then adds its accounts and users. Accounts identical to
+     * one in the vault are skipped, and a name taken by another account is handled
+     * as in AccountManager.importAccounts, which also skips accounts the vault format
+     * cannot store. Users that already exist are kept as they are.
+     * @param archive The backup
+     * @param accountManager The vault to restore into; saved once at the end
+     * @param auth The user store to restore into
+     * @return Counts, sizes and timing
+     * @throws IOException If the archive fails verification (nothing is added),
+     *         or a store cannot be written
+     */
+    public static Summary restore(File archive, AccountManager accountManager, AuthenticationSystem auth) throws IOException {
+        if (!accountManager.isWritable()) {
+            throw new IOException("the vault could not be read at startup, so nothing can be added to it");
+        }
+        long start = System.nanoTime();
+        long verifyMillis = verify(archive).elapsedMillis;
+        Summary summary = read(archive, accountManager, auth);
+        summary.verifyMillis = verifyMillis;
+        summary.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return summary;
+    }
+
+    /**
+     * Streams the archive, checking every segment and the trailer
+     * @param accountManager Where to add the accounts, or null to only verify
+     * @param auth Where to add the users, or null to only verify
+     */
+    private static Summary read(File archive, AccountManager accountManager, AuthenticationSystem auth) throws IOException {
+        long start = System.nanoTime();
+        int batchSize = Math.max(1, AppConfig.getInt("IMPORT_BATCH_SIZE", 1000));
+        Inflater inflater = new Inflater();
+        Summary summary;
+        try (InputStream fileIn = new BufferedInputStream(new FileInputStream(archive), 64 * 1024)) {
+            byte[] header = new byte[HEADER_BYTES];
+            ByteBuffer fields = ByteBuffer.wrap(header);
+            if (fileIn.readNBytes(header, 0, HEADER_BYTES) != HEADER_BYTES || fields.getInt() != MAGIC) {
+                throw new IOException("Not a backup archive: " + archive);
+            }
+            int version = fields.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported backup version " + version);
+            }
+            summary = new Summary(fields.getLong());
+            summary.archiveBytes = archive.length();
+
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(new InflaterInputStream(
+                EncryptionUtil.segmentedInputStream(fileIn, header), inflater, 64 * 1024), 64 * 1024), new CRC32C());
+            DataInputStream in = new DataInputStream(checked);
+            FileManager fileManager = new FileManager();
+            List<Account> accounts = new ArrayList<>(accountManager == null ? 0 : batchSize);
+            List<UserProfile> users = new ArrayList<>();
+            byte[] record = new byte[256];
+            try {
+                while (true) {
+                    int type = in.readUnsignedByte();
+                    if (type == ACCOUNT) {
+                        int length = in.readInt();
+                        if (length < 0 || length > MAX_RECORD_BYTES) {
+                            throw new IOException("Backup is corrupt: account record of " + length + " bytes");
+                        }
+                        if (record.length < length) {
+                            record = new byte[length * 2];
+                        }
+                        in.readFully(record, 0, length);
+                        Account account = AccountCodec.decode(ByteBuffer.wrap(record, 0, length));
+                        summary.accounts++;
+                        if (accountManager != null) {
+                            accounts.add(account);
+                            if (accounts.size() == batchSize) {
+                                restoreAccounts(accountManager, fileManager, accounts, summary);
+                            }
+                        }
+                    } else if (type == USER) {
+                        UserProfile user = new UserProfile(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+                        summary.users++;
+                        if (auth != null) {
+                            users.add(user);
+                            if (users.size() == batchSize) {
+                                summary.usersAdded += auth.restoreUsers(users);
+                                users.clear();
+                            }
+                        }
+                    } else if (type == END) {
+                        int accountCount = in.readInt();
+                        int userCount = in.readInt();
+                        long expected = checked.getChecksum().getValue();
+                        if (in.readLong() != expected) {
+                            throw new IOException("Backup checksum does not match");
+                        }
+                        if (accountCount != summary.accounts || userCount != summary.users) {
+                            throw new IOException("Backup lists " + accountCount + " accounts and " + userCount
+                                + " users but holds " + summary.accounts + " and " + summary.users);
+                        }
+                        if (in.read() != -1) {
+                            throw new IOException("Unexpected data after the end of the backup");
+                        }
+                        break;
+                    } else {
+                        throw new IOException("Backup is corrupt: unknown record type " + type);
+                    }
+                }
+                if (accountManager != null) {
+                    restoreAccounts(accountManager, fileManager, accounts, summary);
+                }
+                if (auth != null) {
+                    summary.usersAdded += auth.restoreUsers(users);
+                }
+            } finally {
+                if (summary.accountsAdded > 0) {
+                    accountManager.commitImport();
+                }
+            }
+            summary.contentBytes = inflater.getBytesWritten();
+        } catch (EOFException | IllegalArgumentException e) {
+            throw new IOException("Backup is corrupt or truncated: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        summary.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        if (Diagnostics.isInfoEnabled()) {
+            Diagnostics.info("Read backup of {} accounts in {} ms", summary.accounts, summary.elapsedMillis);
+        }
+        return summary;
+    }
+
+    /**
+     * Adds a batch of accounts to the vault, encrypts the new ones and empties the batch
+     */
+    private static void restoreAccounts(AccountManager accountManager, FileManager fileManager,
+                                        List<Account> batch, Summary summary) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Account> conflicts = new ArrayList<>();
+        List<Account> unstorable = new ArrayList<>();
+        List<Account> added = accountManager.importAccounts(batch, conflicts, unstorable);
+        summary.accountsAdded += added.size();
+        summary.conflictCount += conflicts.size();
+        summary.accountsSkipped += unstorable.size();
+        summary.accountsUnchanged += batch.size() - added.size() - conflicts.size() - unstorable.size();
+        for (Account account : conflicts) {
+            if (summary.conflicts.size() < MAX_LISTED) {
+                summary.conflicts.add(account.getAccountName());
+            }
+        }
+        batch.clear();
+        fileManager.encodeAll(added);
+    }
+
+    private static void writeUser(DataOutputStream out, UserProfile user) {
+        try {
+            out.writeByte(USER);
+            out.writeUTF(user.getUsername());
+            out.writeUTF(user.getPassword());
+            out.writeUTF(user.getFirstName());
+            out.writeUTF(user.getLastName());
+            out.writeUTF(user.getPasswordHint());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] header(long createdMillis) {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(createdMillis).array();
+    }
+}
@@ -0,0 +1,575 @@
+import com.sun.net.httpserver.BasicAuthenticator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Optional HTTP/JSON API over an AccountManager, for scripts and tooling.
+ * Uses the JDK's built-in HTTP server with one virtual thread per request,
+ * bound to loopback and protected by HTTP Basic auth against the user store.
+ * A successful login is remembered for HTTP_AUTH_CACHE_MS, so a client polling
+ * with the same credentials does not pay for a PBKDF2 check on every request;
+ * only a salted digest of the credentials is kept, compared in constant time.
+ *
+ * Endpoints:
+ *   GET    /categories
+ *   GET    /accounts?category=&cursor=&limit=   one page, ordered by account name
+ *   GET    /accounts/{name}
+ *   GET    /search?q=&limit=
+ *   POST   /accounts          body {"accountName","username","password","category"}
+ *   PUT    /accounts/{name}   same body; a different accountName renames, omitted keeps {name}
+ *   DELETE /accounts/{name}
+ *   POST   /generate?length=|policy=
+ *
+ * Pages carry "nextCursor" (the last account name on the page, opaque to
+ * clients) until the last page. Every GET returns ETag "<epoch>-<version>",
+ * where the version is AccountManager.getVersion() and the epoch is random per
+ * process, so a tag from before a restart never matches. A request with a
+ * matching If-None-Match gets 304 with no body, so pollers only download data
+ * after a change.
+ *
+ * References:
+ * - HttpServer: https://docs.oracle.com/en/java/javase/21/docs/api/jdk.httpserver/com/sun/net/httpserver/HttpServer.html
+ * - Cursor pagination: https://slack.engineering/evolving-api-pagination-at-slack/
+ * - ETag: https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/ETag
+ */
+public class VaultHttpServer {
+    private static final int DEFAULT_PAGE = 50;
+    private static final int MAX_PAGE = 500;
+    // Changes on every start, because the version counter starts over with each process
+    private static final String EPOCH = Long.toHexString(new SecureRandom().nextLong());
+
+    private final AccountManager accountManager;
+    private final AuthenticationSystem auth;
+    // Recent successful logins: username -> digest of the credentials and when it expires
+    private final ConcurrentHashMap<String, CachedLogin> logins = new ConcurrentHashMap<>();
+    private final byte[] loginSalt = new byte[16];
+    private final long loginCacheNanos;
+    // Name-ordered accounts per category filter ("*" for all), rebuilt when the vault version moves
+    private final ConcurrentHashMap<String, SortedView> sortedViews = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public VaultHttpServer(AccountManager accountManager, AuthenticationSystem auth) {
+        this.accountManager = accountManager;
+        this.auth = auth;
+        new SecureRandom().nextBytes(loginSalt);
+        this.loginCacheNanos = Math.max(0, AppConfig.getInt("HTTP_AUTH_CACHE_MS", 60000)) * 1_000_000L;
+    }
+
+    /**
+     * Starts serving in the background
+     * @param port Loopback port to listen on
+     * @throws IOException If the port cannot be bound
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        BasicAuthenticator authenticator = new BasicAuthenticator("vault") {
+            @Override
+            public boolean checkCredentials(String username, String password) {
+                return isAuthorized(username, password);
+            }
+        };
+        server.createContext("/categories", this::handleCategories).setAuthenticator(authenticator);
+        server.createContext("/accounts", this::handleAccounts).setAuthenticator(authenticator);
+        server.createContext("/search", this::handleSearch).setAuthenticator(authenticator);
+        server.createContext("/generate", this::handleGenerate).setAuthenticator(authenticator);
+        server.start();
+        System.out.println("HTTP API listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * Stops accepting requests, giving running ones a second to finish
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.close();
+        }
+    }
+
+    /**
+     * Checks Basic auth credentials, reusing a recent successful check of the
+     * same credentials instead of verifying the password hash again
+     */
+    private boolean isAuthorized(String username, String password) {
+        byte[] digest = credentialDigest(username, password);
+        long now = System.nanoTime();
+        CachedLogin cached = logins.get(username);
+        if (cached != null && now - cached.expires < 0 && MessageDigest.isEqual(cached.digest, digest)) {
+            return true;
+        }
+        if (auth.verify(username, password) == null) {
+            return false;
+        }
+        if (loginCacheNanos > 0) {
+            logins.put(username, new CachedLogin(digest, now + loginCacheNanos));
+        }
+        return true;
+    }
+
+    private byte[] credentialDigest(String username, String password) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(loginSalt);
+            sha.update(username.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class CachedLogin {
+        final byte[] digest;
+        final long expires;
+
+        CachedLogin(byte[] digest, long expires) {
+            this.digest = digest;
+            this.expires = expires;
+        }
+    }
+
+    private static class SortedView {
+        final long version;
+        final NavigableMap<String, Account> accounts;
+
+        SortedView(long version, NavigableMap<String, Account> accounts) {
+            this.version = version;
+            this.accounts = accounts;
+        }
+    }
+
+    private void handleCategories(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "method not allowed");
+                return;
+            }
+            List<String> categories;
+            long version;
+            synchronized (accountManager) {
+                version = accountManager.getVersion();
+                categories = accountManager.getAllCategories();
+            }
+            if (notModified(exchange, version)) {
+                return;
+            }
+            StringBuilder json = new StringBuilder("{\"categories\":[");
+            for (int i = 0; i < categories.size(); i++) {
+                json.append(i == 0 ? "" : ",").append(quote(categories.get(i)));
+            }
+            send(exchange, 200, json.append("]}").toString());
+        }
+    }
+
+    private void handleAccounts(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String name = path.length() > "/accounts/".length()
+                ? path.substring("/accounts/".length()) : null;
+            switch (exchange.getRequestMethod()) {
+                case "GET":
+                    if (name == null) {
+                        listAccounts(exchange);
+                    } else {
+                        getAccount(exchange, name);
+                    }
+                    break;
+                case "POST":
+                    if (name != null) {
+                        sendError(exchange, 405, "method not allowed");
+                        break;
+                    }
+                    Account added = readAccount(exchange, null);
+                    if (added == null) {
+                        break;
+                    }
+                    if (accountManager.addAccount(added)) {
+                        send(exchange, 201, accountJson(added));
+                    } else {
+                        sendError(exchange, 409, "account already exists");
+                    }
+                    break;
+                case "PUT":
+                    if (name == null) {
+                        sendError(exchange, 405, "method not allowed");
+                        break;
+                    }
+                    Account changed = readAccount(exchange, name);
+                    if (changed == null) {
+                        break;
+                    }
+                    if (accountManager.updateAccount(name, changed)) {
+                        send(exchange, 200, accountJson(changed));
+                    } else if (accountManager.findAccount(name) == null) {
+                        sendError(exchange, 404, "account not found");
+                    } else {
+                        sendError(exchange, 409, "account already exists");
+                    }
+                    break;
+                case "DELETE":
+                    if (name != null && accountManager.deleteAccount(name)) {
+                        exchange.sendResponseHeaders(204, -1);
+                    } else {
+                        sendError(exchange, 404, "account not found");
+                    }
+                    break;
+                default:
+                    sendError(exchange, 405, "method not allowed");
+            }
+        }
+    }
+
+    private void listAccounts(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange);
+        String category = query.get("category");
+        String cursor = query.get("cursor");
+        int limit = parseLimit(query.get("limit"));
+
+        SortedView view = sortedView(category);
+        if (notModified(exchange, view.version)) {
+            return;
+        }
+
+        // Name order is stable across changes, so a cursor stays meaningful after adds and deletes
+        Iterator<Account> page = (cursor == null ? view.accounts : view.accounts.tailMap(cursor, false))
+            .values().iterator();
+        StringBuilder json = new StringBuilder("{\"accounts\":[");
+        String last = null;
+        for (int i = 0; i < limit && page.hasNext(); i++) {
+            Account account = page.next();
+            json.append(i == 0 ? "" : ",").append(accountJson(account));
+            last = account.getAccountName();
+        }
+        json.append("]");
+        if (page.hasNext()) {
+            json.append(",\"nextCursor\":").append(quote(last));
+        }
+        send(exchange, 200, json.append("}").toString());
+    }
+
+    /**
+     * Returns the accounts in name order, sorting them only once per vault version
+     * so that walking a large vault page by page does not re-sort it for every page
+     * @param category Category to list, or null for all accounts
+     */
+    private SortedView sortedView(String category) {
+        String key = category == null ? "*" : "=" + category;
+        List<Account> accounts;
+        long version;
+        synchronized (accountManager) {
+            version = accountManager.getVersion();
+            SortedView cached = sortedViews.get(key);
+            if (cached != null && cached.version == version) {
+                return cached;
+            }
+            accounts = category == null
+                ? accountManager.viewAccounts()
+                : accountManager.getAccountsByCategory(category);
+        }
+        TreeMap<String, Account> byName = new TreeMap<>();
+        for (Account account : accounts) {
+            byName.put(account.getAccountName(), account);
+        }
+        SortedView view = new SortedView(version, Collections.unmodifiableNavigableMap(byName));
+        sortedViews.values().removeIf(old -> old.version != version);
+        sortedViews.put(key, view);
+        return view;
+    }
+
+    private void getAccount(HttpExchange exchange, String name) throws IOException {
+        Account account;
+        long version;
+        synchronized (accountManager) {
+            version = accountManager.getVersion();
+            account = accountManager.findAccount(name);
+        }
+        if (account == null) {
+            sendError(exchange, 404, "account not found");
+        } else if (!notModified(exchange, version)) {
+            send(exchange, 200, accountJson(account));
+        }
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "method not allowed");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange);
+            String q = query.getOrDefault("q", "");
+            List<Account> results;
+            long version;
+            synchronized (accountManager) {
+                version = accountManager.getVersion();
+                results = accountManager.search(q, parseLimit(query.get("limit")));
+            }
+            if (notModified(exchange, version)) {
+                return;
+            }
+            StringBuilder json = new StringBuilder("{\"accounts\":[");
+            for (int i = 0; i < results.size(); i++) {
+                json.append(i == 0 ? "" : ",").append(accountJson(results.get(i)));
+            }
+            send(exchange, 200, json.append("]}").toString());
+        }
+    }
+
+    private void handleGenerate(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendError(exchange, 405, "method not allowed");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange);
+            String length = query.get("length");
+            String policy = query.get("policy");
+            String password;
+            try {
+                if (policy != null) {
+                    password = PasswordGenerator.generatePassword(GenerationPolicy.named(policy));
+                } else if (length != null) {
+                    password = PasswordGenerator.generatePassword(Integer.parseInt(length));
+                } else {
+                    password = PasswordGenerator.generatePassword();
+                }
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "length must be a number");
+                return;
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            send(exchange, 200, "{\"password\":" + quote(password) + "}");
+        }
+    }
+
+    /**
+     * Reads and validates an account from the JSON request body.
+     * Sends a 400 response and returns null if it is not acceptable.
+     * @param name Account name to use when the body has none, or null to require one
+     */
+    private Account readAccount(HttpExchange exchange, String name) throws IOException {
+        Map<String, String> body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "invalid JSON: " + e.getMessage());
+            return null;
+        }
+        String accountName = body.getOrDefault("accountName", name);
+        String password = body.get("password");
+        if (accountName == null || accountName.isEmpty() || body.get("category") == null) {
+            sendError(exchange, 400, "accountName and category are required");
+            return null;
+        }
+        if (!PasswordValidator.isValid(password)) {
+            sendError(exchange, 400, "password does not meet requirements");
+            return null;
+        }
+        Account account = new Account(accountName, body.getOrDefault("username", ""), password, body.get("category"));
+        if (!accountManager.canStore(account)) {
+            sendError(exchange, 400, "the vault format cannot store commas in account fields");
+            return null;
+        }
+        return account;
+    }
+
+    private static boolean notModified(HttpExchange exchange, long version) throws IOException {
+        String etag = "\"" + EPOCH + "-" + version + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.equals(etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            return true;
+        }
+        return false;
+    }
+
+    private static int parseLimit(String value) {
+        try {
+            return value == null ? DEFAULT_PAGE : Math.max(1, Math.min(Integer.parseInt(value), MAX_PAGE));
+        } catch (NumberFormatException e) {
+            return DEFAULT_PAGE;
+        }
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, "{\"error\":" + quote(message) + "}");
+    }
+
+    private static String accountJson(Account account) {
+        return "{\"accountName\":" + quote(account.getAccountName())
+            + ",\"username\":" + quote(account.getUsername())
+            + ",\"password\":" + quote(account.getPassword())
+            + ",\"category\":" + quote(account.getCategory()) + "}";
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    /**
+     * Parses a flat JSON object whose values are all strings (or null)
+     * @throws IllegalArgumentException If the text is not such an object
+     */
+    static Map<String, String> parseObject(String json) {
+        Map<String, String> result = new HashMap<>();
+        int[] pos = {skipSpace(json, 0)};
+        expect(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+            return result;
+        }
+        while (true) {
+            String key = parseString(json, pos);
+            expect(json, pos, ':');
+            String value;
+            if (json.startsWith("null", pos[0])) {
+                pos[0] += 4;
+                value = null;
+            } else {
+                value = parseString(json, pos);
+            }
+            result.put(key, value);
+            char next = peek(json, pos);
+            pos[0]++;
+            if (next == '}') {
+                break;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("expected , or } at " + (pos[0] - 1));
+            }
+            pos[0] = skipSpace(json, pos[0]);
+        }
+        if (skipSpace(json, pos[0]) != json.length()) {
+            throw new IllegalArgumentException("unexpected data after object");
+        }
+        return result;
+    }
+
+    private static String parseString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder out = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= json.length()) {
+                throw new IllegalArgumentException("unterminated string");
+            }
+            char c = json.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (i >= json.length()) {
+                throw new IllegalArgumentException("unterminated string");
+            }
+            char escaped = json.charAt(i++);
+            switch (escaped) {
+                case '"': case '\\': case '/': out.append(escaped); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'u':
+                    if (i + 4 > json.length()) {
+                        throw new IllegalArgumentException("bad \\u escape");
+                    }
+                    try {
+                        out.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("bad \\u escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("bad escape \\" + escaped);
+            }
+        }
+        pos[0] = skipSpace(json, i);
+        return out.toString();
+    }
+
+    private static void expect(String json, int[] pos, char c) {
+        if (peek(json, pos) != c) {
+            throw new IllegalArgumentException("expected " + c + " at " + pos[0]);
+        }
+        pos[0] = skipSpace(json, pos[0] + 1);
+    }
+
+    private static char peek(String json, int[] pos) {
+        pos[0] = skipSpace(json, pos[0]);
+        return pos[0] < json.length() ? json.charAt(pos[0]) : '\0';
+    }
+
+    private static int skipSpace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Append-only journal of account mutations.
+ * Every add, modify and delete is written as one encrypted line, so a single
+ * change costs one small append instead of a rewrite of the whole vault.
+ * At startup the journal is replayed on top of the last snapshot (passwords.txt);
+ * compaction writes a fresh snapshot and empties the journal.
+ *
+ * Each line is the Base64 text of one encrypted record. Before encryption a
+ * record is a type byte followed by AccountCodec length-prefixed fields, so
+ * commas and any other characters in the fields round-trip:
+ *   'A' name username password category
+ *   'M' oldName name username password category
+ *   'D' name
+ *
+ * References:
+ * - Write-ahead logging: https://en.wikipedia.org/wiki/Write-ahead_logging
+ * - FileWriter append mode: https://docs.oracle.com/javase/8/docs/api/java/io/FileWriter.html
+ */
+public class VaultJournal {
+    private static final byte ADD = 'A';
+    private static final byte MODIFY = 'M';
+    private static final byte DELETE = 'D';
+
+    private final File file;
+    private final AccountCodec codec = new AccountCodec();
+    private PrintWriter writer;
+    private int entryCount;
+
+    public VaultJournal(String path) {
+        this.file = new File(path);
+    }
+
+    /**
+     * Records that an account was added
+     * @param account The new account
+     * @throws IOException If the record could not be written; the change must not be applied
+     */
+    public void recordAdd(Account account) throws IOException {
+        append(codec.encodeEntry(ADD, null, account));
+    }
+
+    /**
+     * Records that an account was replaced by a new version
+     * @param oldName Name the account had before the change
+     * @param account The account after the change
+     * @throws IOException If the record could not be written; the change must not be applied
+     */
+    public void recordModify(String oldName, Account account) throws IOException {
+        append(codec.encodeEntry(MODIFY, oldName, account));
+    }
+
+    /**
+     * Records that an account was deleted
+     * @param accountName Name of the deleted account
+     * @throws IOException If the record could not be written; the change must not be applied
+     */
+    public void recordDelete(String accountName) throws IOException {
+        append(codec.encodeEntry(DELETE, accountName, null));
+    }
+
+    /**
+     * Re-applies every journal record to the account manager.
+     * Replay is idempotent, so a journal that survived a crash after
+     * compaction wrote the snapshot does not create duplicates.
+     * @param accountManager The manager holding the snapshot state
+     * @return Number of records applied
+     */
+    public int replay(AccountManager accountManager) {
+        entryCount = 0;
+        if (!file.exists()) {
+            return 0;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    ByteBuffer record = EncryptionUtil.decryptBytes(ByteBuffer.wrap(Base64.getDecoder().decode(line.trim())));
+                    byte type = record.get();
+                    if (type == ADD) {
+                        accountManager.replayAdd(AccountCodec.decode(record));
+                    } else if (type == MODIFY) {
+                        String oldName = AccountCodec.decodeField(record);
+                        accountManager.replayModify(oldName, AccountCodec.decode(record));
+                    } else if (type == DELETE) {
+                        accountManager.replayDelete(AccountCodec.decodeField(record));
+                    } else {
+                        throw new IllegalArgumentException("unknown record type " + type);
+                    }
+                } catch (GeneralSecurityException | RuntimeException e) {
+                    System.out.println("Skipping unreadable journal record: " + e.getMessage());
+                    continue;
+                }
+                entryCount++;
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading journal: " + e.getMessage());
+        }
+        return entryCount;
+    }
+
+    /**
+     * @return Number of records written since the last compaction
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * Empties the journal. Only call after a snapshot containing every
+     * journaled change has been written.
+     */
+    public void truncate() {
+        close();
+        try {
+            new FileWriter(file).close();
+            entryCount = 0;
+        } catch (IOException e) {
+            System.out.println("Error truncating journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the underlying file handle
+     */
+    public void close() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Encrypts the first length bytes of the codec's buffer and appends them as one line
+     */
+    private void append(int length) throws IOException {
+        String line;
+        try {
+            ByteBuffer encrypted = EncryptionUtil.encryptBytes(codec.buffer(), 0, length);
+            byte[] bytes = new byte[encrypted.remaining()];
+            encrypted.get(bytes);
+            line = Base64.getEncoder().encodeToString(bytes);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt journal record: " + e.getMessage(), e);
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new FileWriter(file, true), true);
+        }
+        writer.println(line);
+        if (writer.checkError()) {
+            // Reopen on the next append rather than keep writing after a failure
+            close();
+            throw new IOException("write to " + file + " failed");
+        }
+        entryCount++;
+    }
+}
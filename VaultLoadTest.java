@@ -0,0 +1,107 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load-test client for VaultServer on loopback.
+ *
+ * Opens many short sessions (connect, LOGIN, CATEGORIES, SEARCH, GENERATE, QUIT),
+ * a fixed number at a time, each on its own virtual thread, and reports
+ * sessions per second plus session latency percentiles.
+ *
+ * Usage: java VaultLoadTest username password [sessions] [concurrency] [port]
+ *
+ * References:
+ * - Virtual threads: https://openjdk.org/jeps/444
+ * - Percentiles: https://en.wikipedia.org/wiki/Percentile#The_nearest-rank_method
+ */
+public class VaultLoadTest {
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java VaultLoadTest username password [sessions] [concurrency] [port]");
+            return;
+        }
+        String username = args[0];
+        String password = args[1];
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int port = args.length > 4 ? Integer.parseInt(args[4]) : AppConfig.getInt("SERVER_PORT", 7070);
+
+        long[] latencies = new long[sessions];
+        AtomicInteger failures = new AtomicInteger();
+        Semaphore permits = new Semaphore(concurrency);
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessions; i++) {
+                int session = i;
+                permits.acquire();
+                executor.submit(() -> {
+                    try {
+                        long begin = System.nanoTime();
+                        runSession(port, username, password);
+                        latencies[session] = System.nanoTime() - begin;
+                    } catch (IOException e) {
+                        latencies[session] = -1;
+                        if (failures.incrementAndGet() == 1) {
+                            System.out.println("Error in session: " + e.getMessage());
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long[] completed = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+        System.out.printf("Sessions: %d ok, %d failed, %d concurrent%n", completed.length, failures.get(), concurrency);
+        System.out.printf("Throughput: %.0f sessions/s%n", completed.length / seconds);
+        if (completed.length > 0) {
+            System.out.printf("Latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(completed, 50), percentile(completed, 99), completed[completed.length - 1] / 1e6);
+        }
+    }
+
+    private static void runSession(int port, String username, String password) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            request(in, out, "LOGIN\t" + VaultServer.escape(username) + "\t" + VaultServer.escape(password));
+            request(in, out, "CATEGORIES");
+            request(in, out, "SEARCH\tacc");
+            request(in, out, "GENERATE");
+            request(in, out, "QUIT");
+        }
+    }
+
+    /**
+     * Sends one request and reads its whole reply
+     * @throws IOException If the connection fails or the server answers ERR
+     */
+    private static void request(BufferedReader in, Writer out, String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+        out.flush();
+        String status = in.readLine();
+        if (status == null || !status.startsWith("OK ")) {
+            throw new IOException(line.split("\t")[0] + " failed: " + status);
+        }
+        int lines = Integer.parseInt(status.substring(3));
+        for (int i = 0; i < lines; i++) {
+            in.readLine();
+        }
+    }
+
+    private static double percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves one shared vault to many clients over a loopback socket
+ * (started with "java PasswordManager --server").
+ *
+ * Every connection is a session handled on its own virtual thread, so thousands
+ * of mostly idle sessions cost little more than their sockets. All sessions use
+ * the same AccountManager, whose public methods are synchronized.
+ *
+ * Protocol: UTF-8 lines; a request is a command followed by tab-separated
+ * arguments. A reply is either "ERR <message>" or "OK <n>" followed by n lines,
+ * each one result with tab-separated fields. Arguments and result fields are
+ * escaped so they fit on one line: backslash is written as \\, tab as \t,
+ * newline as \n and carriage return as \r (see escape and unescape).
+ *
+ *   LOGIN user pass             must succeed before anything else (3 attempts)
+ *   CATEGORIES                  one category per line
+ *   LIST [category]             name, username, password, category per line
+ *   GET name                    one account
+ *   SEARCH query                up to 20 accounts
+ *   ADD name user pass category
+ *   MODIFY name user pass category
+ *   DELETE name
+ *   GENERATE [policy]           one generated password, optionally from a named policy
+ *   QUIT
+ *
+ * References:
+ * - Virtual threads: https://openjdk.org/jeps/444
+ * - ServerSocket: https://docs.oracle.com/en/java/javase/21/docs/api/java.base/java/net/ServerSocket.html
+ */
+public class VaultServer {
+    private static final int MAX_LOGIN_ATTEMPTS = 3;
+    private static final int SEARCH_LIMIT = 20;
+
+    private final int port;
+    private final int idleTimeoutMs;
+    private final AccountManager accountManager;
+    private final AuthenticationSystem auth;
+
+    public VaultServer(int port, int idleTimeoutMs) {
+        this.port = port;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.accountManager = new AccountManager();
+        this.auth = new AuthenticationSystem();
+    }
+
+    /**
+     * Accepts connections until the process is stopped
+     */
+    public void run() {
+        Runtime.getRuntime().addShutdownHook(new Thread(accountManager::close, "vault-server-shutdown"));
+        try (ServerSocket server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+             ExecutorService sessions = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.println("Vault server listening on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                sessions.submit(() -> serve(socket));
+            }
+        } catch (IOException e) {
+            System.out.println("Error running server: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setSoTimeout(idleTimeoutMs);
+            socket.setTcpNoDelay(true);
+            Diagnostics.debug("Session opened from {}", socket.getRemoteSocketAddress());
+
+            String user = null;
+            int attempts = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] request = line.split("\t", -1);
+                for (int i = 1; i < request.length; i++) {
+                    request[i] = unescape(request[i]);
+                }
+                String command = request[0].toUpperCase();
+
+                if (command.equals("QUIT")) {
+                    reply(out, "OK 0");
+                    break;
+                }
+                if (user == null) {
+                    if (!command.equals("LOGIN") || request.length != 3) {
+                        reply(out, "ERR login required");
+                        continue;
+                    }
+                    if (auth.verify(request[1], request[2]) != null) {
+                        user = request[1];
+                        reply(out, "OK 0");
+                        Diagnostics.info("Session login: {}", user);
+                    } else if (++attempts >= MAX_LOGIN_ATTEMPTS) {
+                        reply(out, "ERR too many login attempts");
+                        break;
+                    } else {
+                        reply(out, "ERR invalid username or password");
+                    }
+                    continue;
+                }
+                handle(command, request, out);
+            }
+        } catch (SocketTimeoutException e) {
+            if (Diagnostics.isDebugEnabled()) {
+                Diagnostics.debug("Session idle for {} ms, closing", idleTimeoutMs);
+            }
+        } catch (SocketException e) {
+            Diagnostics.debug("Session ended: {}", e.getMessage());
+        } catch (IOException e) {
+            Diagnostics.error("Error in session", e);
+        }
+    }
+
+    private void handle(String command, String[] request, BufferedWriter out) throws IOException {
+        switch (command) {
+            case "CATEGORIES":
+                List<String> categories = accountManager.getAllCategories();
+                StringBuilder response = new StringBuilder("OK ").append(categories.size());
+                for (String category : categories) {
+                    response.append('\n').append(escape(category));
+                }
+                reply(out, response.toString());
+                break;
+            case "LIST":
+                replyAccounts(out, request.length > 1
+                    ? accountManager.getAccountsByCategory(request[1])
+                    : accountManager.viewAccounts());
+                break;
+            case "GET":
+                if (request.length != 2) {
+                    reply(out, "ERR usage: GET name");
+                    break;
+                }
+                Account account = accountManager.findAccount(request[1]);
+                if (account == null) {
+                    reply(out, "ERR account not found");
+                } else {
+                    replyAccounts(out, List.of(account));
+                }
+                break;
+            case "SEARCH":
+                replyAccounts(out, request.length > 1 ? accountManager.search(request[1], SEARCH_LIMIT) : List.of());
+                break;
+            case "ADD":
+            case "MODIFY":
+                if (request.length != 5 || request[1].isEmpty()) {
+                    reply(out, "ERR usage: " + command + " name user pass category");
+                    break;
+                }
+                if (!PasswordValidator.isValid(request[3])) {
+                    reply(out, "ERR password does not meet requirements");
+                    break;
+                }
+                Account changed = new Account(request[1], request[2], request[3], request[4]);
+                if (!accountManager.canStore(changed)) {
+                    reply(out, "ERR the vault format cannot store commas in account fields");
+                    break;
+                }
+                boolean done = command.equals("ADD")
+                    ? accountManager.addAccount(changed)
+                    : accountManager.updateAccount(request[1], changed);
+                reply(out, done ? "OK 0" : "ERR " + (command.equals("ADD") ? "account already exists" : "account not found"));
+                break;
+            case "DELETE":
+                if (request.length != 2) {
+                    reply(out, "ERR usage: DELETE name");
+                    break;
+                }
+                reply(out, accountManager.deleteAccount(request[1]) ? "OK 0" : "ERR account not found");
+                break;
+            case "GENERATE":
+                try {
+                    reply(out, "OK 1\n" + escape(request.length > 1
+                        ? PasswordGenerator.generatePassword(GenerationPolicy.named(request[1]))
+                        : PasswordGenerator.generatePassword()));
+                } catch (IllegalArgumentException e) {
+                    reply(out, "ERR " + e.getMessage());
+                }
+                break;
+            default:
+                reply(out, "ERR unknown command " + command);
+        }
+    }
+
+    private static void replyAccounts(BufferedWriter out, List<Account> accounts) throws IOException {
+        StringBuilder response = new StringBuilder("OK ").append(accounts.size());
+        for (Account account : accounts) {
+            response.append('\n')
+                .append(escape(account.getAccountName())).append('\t')
+                .append(escape(account.getUsername())).append('\t')
+                .append(escape(account.getPassword())).append('\t')
+                .append(escape(account.getCategory()));
+        }
+        reply(out, response.toString());
+    }
+
+    /**
+     * Escapes a field for the protocol, so it contains no tab or line break
+     */
+    static String escape(String field) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            String replacement;
+            switch (c) {
+                case '\\': replacement = "\\\\"; break;
+                case '\t': replacement = "\\t"; break;
+                case '\n': replacement = "\\n"; break;
+                case '\r': replacement = "\\r"; break;
+                default: replacement = null;
+            }
+            if (replacement == null) {
+                if (escaped != null) {
+                    escaped.append(c);
+                }
+                continue;
+            }
+            if (escaped == null) {
+                escaped = new StringBuilder(field.length() + 8).append(field, 0, i);
+            }
+            escaped.append(replacement);
+        }
+        return escaped == null ? field : escaped.toString();
+    }
+
+    /**
+     * Reverses escape. A backslash before any other character is kept as it is.
+     */
+    static String unescape(String field) {
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder plain = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\' || i + 1 == field.length()) {
+                plain.append(c);
+                continue;
+            }
+            char next = field.charAt(++i);
+            switch (next) {
+                case '\\': plain.append('\\'); break;
+                case 't': plain.append('\t'); break;
+                case 'n': plain.append('\n'); break;
+                case 'r': plain.append('\r'); break;
+                default: plain.append(c).append(next);
+            }
+        }
+        return plain.toString();
+    }
+
+    private static void reply(BufferedWriter out, String response) throws IOException {
+        out.write(response);
+        out.write('\n');
+        out.flush();
+    }
+}
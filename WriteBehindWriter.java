@@ -0,0 +1,151 @@
+/**
+ * Background thread that saves the vault after changes, so the menu never
+ * waits on a full rewrite.
+ *
+ * Mutations only mark the vault as dirty; the writer coalesces every change
+ * made during its wait into a single save of the latest state. Saves go
+ * through FileManager, which writes a temporary file, fsyncs it and renames
+ * it over the vault, so a crash leaves either the old or the new file intact.
+ *
+ * Save policies (SAVE_POLICY in config.properties):
+ *   always   - save shortly after every burst of changes (default)
+ *   interval - save at most once every SAVE_INTERVAL_MS
+ *   exit     - no background saves; the vault is written once on close()
+ *
+ * The policy only decides when saves happen. Every save is still fsynced,
+ * because the rename that replaces the vault is only safe once the new file
+ * is on disk.
+ *
+ * References:
+ * - Write-behind caching: https://en.wikipedia.org/wiki/Cache_(computing)#Writing_policies
+ * - wait/notify: https://www.baeldung.com/java-wait-notify
+ */
+public class WriteBehindWriter {
+    public enum SavePolicy { ALWAYS, INTERVAL, EXIT }
+
+    // Short pause that lets a burst of edits (e.g. a modify right after an add) share one save
+    private static final long COALESCE_MS = 20;
+    // Wait after a failed save before trying again, so a full disk is not hammered
+    private static final long RETRY_MS = 5000;
+
+    private final AccountManager accountManager;
+    private final FileManager fileManager;
+    private final SavePolicy policy;
+    private final long intervalMs;
+    private final Object lock = new Object();
+    private Thread thread;
+    private boolean dirty;
+    private boolean closed;
+
+    public WriteBehindWriter(AccountManager accountManager, FileManager fileManager, SavePolicy policy, long intervalMs) {
+        this.accountManager = accountManager;
+        this.fileManager = fileManager;
+        this.policy = policy;
+        this.intervalMs = Math.max(intervalMs, COALESCE_MS);
+    }
+
+    /**
+     * Starts the background thread and registers the exit-time save. Call once,
+     * after construction, so neither sees a partly built writer.
+     */
+    public void start() {
+        // EXIT never saves in the background; close() does the only write
+        if (policy != SavePolicy.EXIT) {
+            thread = new Thread(this::run, "vault-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        // Last chance to save if the program is stopped without going through exit
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "vault-writer-shutdown"));
+    }
+
+    /**
+     * Marks the vault as changed. Returns immediately.
+     */
+    public void requestSave() {
+        synchronized (lock) {
+            dirty = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the background thread and writes any pending changes.
+     * Returns once the vault on disk is up to date. Safe to call more than once.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        boolean pending;
+        synchronized (lock) {
+            pending = dirty;
+            dirty = false;
+        }
+        if (pending && !save()) {
+            System.out.println("Warning: the latest changes could not be saved to disk.");
+        }
+    }
+
+    private void run() {
+        long delay = policy == SavePolicy.INTERVAL ? intervalMs : COALESCE_MS;
+        boolean saved = true;
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (!dirty && !closed) {
+                        lock.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    // Let further changes pile up before saving; after a failure, wait longer before retrying
+                    long deadline = System.currentTimeMillis() + (saved ? delay : Math.max(delay, RETRY_MS));
+                    long remaining;
+                    while (!closed && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                        lock.wait(remaining);
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    dirty = false;
+                }
+                Diagnostics.debug("Write-behind save");
+                saved = save();
+                if (!saved && accountManager.isWritable()) {
+                    // Still pending, so the next attempt or close() writes it
+                    synchronized (lock) {
+                        dirty = true;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return true if the vault was written
+     */
+    private boolean save() {
+        try {
+            return fileManager.saveData(accountManager);
+        } catch (RuntimeException e) {
+            // Keep the writer alive; the change stays pending
+            System.out.println("Error saving accounts: " + e.getMessage());
+            Diagnostics.stackTrace(e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccountCodec.encode and decode, the record format of the binary, sealed and
+ * sharded vaults and of backups
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountCodecBenchmark {
+    /** Length of each of the account's four fields */
+    @Param({"8", "32", "128"})
+    public int fieldLength;
+
+    // AccountCodec reuses its buffer, so each thread has its own
+    private Object codec;
+    private Object account;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Throwable {
+        codec = (Object) App.NEW_CODEC.invokeExact();
+        account = (Object) App.NEW_ACCOUNT.invokeExact(Inputs.text(fieldLength, 1), Inputs.text(fieldLength, 2),
+            Inputs.text(fieldLength, 3), Inputs.text(fieldLength, 4));
+        int length = (int) App.CODEC_ENCODE.invokeExact(codec, account);
+        encoded = Arrays.copyOf((byte[]) App.CODEC_BUFFER.invokeExact(codec), length);
+    }
+
+    @Benchmark
+    public int encode() throws Throwable {
+        return (int) App.CODEC_ENCODE.invokeExact(codec, account);
+    }
+
+    @Benchmark
+    public Object decode() throws Throwable {
+        return (Object) App.CODEC_DECODE.invokeExact(ByteBuffer.wrap(encoded));
+    }
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+
+/**
+ * Method handles for the password manager's classes.
+ *
+ * The application is written in the default package, which code in a named
+ * package (as JMH requires benchmarks to be) cannot refer to by name. Each
+ * handle is looked up once; application types in its signature are seen as
+ * Object. The handles are static final, so the JIT treats them as constants
+ * and inlines the target as it would a direct call.
+ *
+ * References:
+ * - MethodHandle.invokeExact: https://docs.oracle.com/en/java/javase/17/docs/api/java.base/java/lang/invoke/MethodHandle.html
+ * - JMH samples: https://github.com/openjdk/jmh/tree/master/jmh-samples/src/main/java/org/openjdk/jmh/samples
+ */
+final class App {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    /** EncryptionUtil.encrypt(String) -> String */
+    static final MethodHandle ENCRYPT = staticMethod("EncryptionUtil", "encrypt", String.class, String.class);
+    /** EncryptionUtil.decrypt(String) -> String */
+    static final MethodHandle DECRYPT = staticMethod("EncryptionUtil", "decrypt", String.class, String.class);
+    /** Account.fromRecord(String) -> Account */
+    static final MethodHandle ACCOUNT_FROM_RECORD = staticMethod("Account", "fromRecord", type("Account"), String.class);
+    /** new Account(name, username, password, category) */
+    static final MethodHandle NEW_ACCOUNT = constructor("Account", String.class, String.class, String.class, String.class);
+    /** new AccountCodec() */
+    static final MethodHandle NEW_CODEC = constructor("AccountCodec");
+    /** AccountCodec.encode(Account) -> int */
+    static final MethodHandle CODEC_ENCODE = virtualMethod("AccountCodec", "encode", int.class, type("Account"));
+    /** AccountCodec.buffer() -> byte[] */
+    static final MethodHandle CODEC_BUFFER = virtualMethod("AccountCodec", "buffer", byte[].class);
+    /** AccountCodec.decode(ByteBuffer) -> Account */
+    static final MethodHandle CODEC_DECODE = staticMethod("AccountCodec", "decode", type("Account"), ByteBuffer.class);
+    /** PasswordGenerator.generatePassword(int) -> String */
+    static final MethodHandle GENERATE_PASSWORD = staticMethod("PasswordGenerator", "generatePassword", String.class, int.class);
+    /** PasswordValidator.isValid(String) -> boolean */
+    static final MethodHandle IS_VALID = staticMethod("PasswordValidator", "isValid", boolean.class, String.class);
+    /** PasswordValidator.standard() -> PasswordValidator */
+    static final MethodHandle STANDARD_VALIDATOR = staticMethod("PasswordValidator", "standard", type("PasswordValidator"));
+    /** PasswordValidator.evaluate(String) -> PasswordValidator.Result */
+    static final MethodHandle EVALUATE = virtualMethod("PasswordValidator", "evaluate", type("PasswordValidator$Result"), String.class);
+
+    private App() {
+    }
+
+    private static MethodHandle staticMethod(String owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return visible(LOOKUP.findStatic(type(owner), name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + owner + "." + name + ": " + e, e);
+        }
+    }
+
+    private static MethodHandle virtualMethod(String owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return visible(LOOKUP.findVirtual(type(owner), name, MethodType.methodType(returnType, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + owner + "." + name + ": " + e, e);
+        }
+    }
+
+    private static MethodHandle constructor(String owner, Class<?>... parameters) {
+        try {
+            return visible(LOOKUP.findConstructor(type(owner), MethodType.methodType(void.class, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find constructor of " + owner + ": " + e, e);
+        }
+    }
+
+    /**
+     * @return The handle with every application type in its signature replaced by Object
+     */
+    private static MethodHandle visible(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            type = type.changeParameterType(i, erase(type.parameterType(i)));
+        }
+        return handle.asType(type.changeReturnType(erase(type.returnType())));
+    }
+
+    private static Class<?> erase(Class<?> type) {
+        return type.isPrimitive() || type.isArray() || !type.getPackageName().isEmpty() ? type : Object.class;
+    }
+
+    private static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Application class " + name + " is not on the class path", e);
+        }
+    }
+}
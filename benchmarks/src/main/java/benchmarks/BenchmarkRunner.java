@@ -0,0 +1,101 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Runs the benchmarks once per thread count and writes every result to
+ * results.json and results.csv in one directory, so two runs (say, before and
+ * after a change) can be compared with CompareResults.
+ *
+ * Usage: java -jar benchmarks.jar [--threads 1,4] [--out results/name] [--quick] [regex ...]
+ *   --threads  Thread counts to run each benchmark with (default: 1 and the number of cores)
+ *   --out      Directory for the results (default: results/ plus the date and time)
+ *   --quick    One short warmup and measurement iteration, for a smoke test
+ *   regex      Benchmarks to run, e.g. Encryption or "Validator.isValid" (default: all)
+ *
+ * Any other option starting with "-" is not understood here; run
+ * "java -cp benchmarks.jar org.openjdk.jmh.Main -h" for JMH's own command line.
+ *
+ * The application reads config.properties (with USER_KEY and PASS_KEY) from the
+ * working directory, so run this from a directory that has one.
+ *
+ * References:
+ * - JMH Runner API: https://github.com/openjdk/jmh/blob/master/jmh-samples/src/main/java/org/openjdk/jmh/samples/JMHSample_01_HelloWorld.java
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, IOException {
+        TreeSet<Integer> threads = new TreeSet<>(List.of(1, Runtime.getRuntime().availableProcessors()));
+        File out = new File("results", new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+        boolean quick = false;
+        List<String> includes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads.clear();
+                    for (String count : args[++i].split(",")) {
+                        threads.add(Integer.parseInt(count.trim()));
+                    }
+                    break;
+                case "--out":
+                    out = new File(args[++i]);
+                    break;
+                case "--quick":
+                    quick = true;
+                    break;
+                default:
+                    if (args[i].startsWith("-")) {
+                        System.err.println("Unknown option " + args[i]);
+                        System.exit(2);
+                    }
+                    includes.add(args[i]);
+            }
+        }
+        if (!new File("config.properties").exists()) {
+            System.err.println("No config.properties in " + new File("").getAbsolutePath()
+                + "; copy config.properties.template there and set USER_KEY and PASS_KEY.");
+            System.exit(1);
+        }
+        if (includes.isEmpty()) {
+            includes.add("benchmarks\\..*Benchmark\\.");
+        }
+
+        Collection<RunResult> results = new ArrayList<>();
+        for (int count : threads) {
+            ChainedOptionsBuilder options = new OptionsBuilder().threads(count).shouldFailOnError(true);
+            includes.forEach(options::include);
+            if (quick) {
+                options.warmupIterations(1).measurementIterations(1);
+            }
+            results.addAll(new Runner(options.build()).run());
+        }
+
+        if (!out.isDirectory() && !out.mkdirs()) {
+            System.err.println("Cannot create " + out);
+            System.exit(1);
+        }
+        for (ResultFormatType format : new ResultFormatType[] {ResultFormatType.JSON, ResultFormatType.CSV}) {
+            File file = new File(out, "results." + format.name().toLowerCase());
+            try (PrintStream stream = new PrintStream(file, StandardCharsets.UTF_8)) {
+                ResultFormatFactory.getInstance(format, stream).writeOut(results);
+            }
+        }
+        System.out.println("Results written to " + out);
+    }
+}
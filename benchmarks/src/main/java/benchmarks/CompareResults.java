@@ -0,0 +1,146 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two results.csv files written by BenchmarkRunner, e.g. from the
+ * commits before and after a change, and prints each benchmark's change.
+ *
+ * Usage: java -cp benchmarks.jar benchmarks.CompareResults base/results.csv new/results.csv
+ *
+ * A change counts only if the scores differ by more than their two error
+ * margins (99.9% confidence) combined; otherwise it is reported as "same".
+ */
+public class CompareResults {
+    /**
+     * One row of a JMH CSV file
+     */
+    private static class Score {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Score(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults base/results.csv new/results.csv");
+            System.exit(2);
+        }
+        Map<String, Score> base = read(Path.of(args[0]));
+        Map<String, Score> changed = read(Path.of(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s  %s%n", "Benchmark", "Base", "New", "Change", "");
+        for (Map.Entry<String, Score> entry : changed.entrySet()) {
+            Score before = base.get(entry.getKey());
+            Score after = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s  new%n", entry.getKey(), "-", after.score, "");
+                continue;
+            }
+            double change = (after.score - before.score) / before.score * 100;
+            String verdict = "same";
+            if (Math.abs(after.score - before.score) > before.error + after.error) {
+                // Average time: lower is better; throughput: higher is better
+                boolean better = after.mode.equals("thrpt") ? after.score > before.score : after.score < before.score;
+                verdict = better ? "faster" : "slower";
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%  %s (%s)%n",
+                entry.getKey(), before.score, after.score, change, verdict, after.unit);
+        }
+        for (String key : base.keySet()) {
+            if (!changed.containsKey(key)) {
+                System.out.printf("%-70s %14.3f %14s %9s  removed%n", key, base.get(key).score, "-", "");
+            }
+        }
+    }
+
+    /**
+     * @return Scores keyed by benchmark, parameters and thread count
+     */
+    private static Map<String, Score> read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException(file + " is empty");
+        }
+        List<String> header = fields(lines.get(0));
+        int benchmark = header.indexOf("Benchmark");
+        int mode = header.indexOf("Mode");
+        int threads = header.indexOf("Threads");
+        int score = header.indexOf("Score");
+        int error = header.indexOf("Score Error (99.9%)");
+        int unit = header.indexOf("Unit");
+        if (benchmark < 0 || mode < 0 || threads < 0 || score < 0 || error < 0 || unit < 0) {
+            throw new IOException(file + " is not a JMH CSV result file");
+        }
+
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> row = fields(line);
+            StringBuilder key = new StringBuilder(row.get(benchmark));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < row.size() && !row.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(row.get(i));
+                }
+            }
+            key.append(" t=").append(row.get(threads));
+            scores.put(key.toString(), new Score(row.get(mode), number(row.get(score)), number(row.get(error)), row.get(unit)));
+        }
+        return scores;
+    }
+
+    private static double number(String value) {
+        if (value.isEmpty() || value.equals("NaN")) {
+            return 0;
+        }
+        return Double.parseDouble(value.replace(',', '.'));
+    }
+
+    /**
+     * Splits one CSV line; fields may be quoted, with "" for a quote
+     */
+    private static List<String> fields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,26 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PasswordGenerator.generatePassword: the standard policy, drawing from each
+ * thread's own SecureRandom
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneratorBenchmark {
+    /** Password length */
+    @Param({"12", "32", "128"})
+    public int length;
+
+    @Benchmark
+    public String generatePassword() throws Throwable {
+        return (String) App.GENERATE_PASSWORD.invokeExact(length);
+    }
+}
@@ -0,0 +1,31 @@
+package benchmarks;
+
+/**
+ * Deterministic benchmark inputs, so every run and every commit measures the same data
+ */
+final class Inputs {
+    private static final String CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!@#$%";
+
+    private Inputs() {
+    }
+
+    /**
+     * @return A string of the given length without commas, different for each seed
+     */
+    static String text(int length, int seed) {
+        StringBuilder text = new StringBuilder(length);
+        int state = seed * 0x9E3779B9 + 1;
+        for (int i = 0; i < length; i++) {
+            state = state * 1103515245 + 12345;
+            text.append(CHARACTERS.charAt((state >>> 16) % CHARACTERS.length()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return A passwords.txt record: four fields of the given length joined by commas
+     */
+    static String record(int fieldLength) {
+        return text(fieldLength, 1) + "," + text(fieldLength, 2) + "," + text(fieldLength, 3) + "," + text(fieldLength, 4);
+    }
+}
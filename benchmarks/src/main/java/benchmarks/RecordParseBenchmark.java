@@ -0,0 +1,41 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account.fromRecord, the comma-split parse of a decrypted passwords.txt record,
+ * on its own and together with the decryption in front of it as a load does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecordParseBenchmark {
+    /** Length of each of the record's four fields */
+    @Param({"8", "32", "128"})
+    public int fieldLength;
+
+    private String record;
+    private String encrypted;
+
+    @Setup
+    public void setUp() throws Throwable {
+        record = Inputs.record(fieldLength);
+        encrypted = (String) App.ENCRYPT.invokeExact(record);
+    }
+
+    @Benchmark
+    public Object parse() throws Throwable {
+        return (Object) App.ACCOUNT_FROM_RECORD.invokeExact(record);
+    }
+
+    @Benchmark
+    public Object decryptAndParse() throws Throwable {
+        String decrypted = (String) App.DECRYPT.invokeExact(encrypted);
+        return (Object) App.ACCOUNT_FROM_RECORD.invokeExact(decrypted);
+    }
+}
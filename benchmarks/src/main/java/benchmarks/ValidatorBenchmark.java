@@ -0,0 +1,41 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PasswordValidator.isValid (the rule check run on every new password) and
+ * evaluate (the strength estimate behind the password health check)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+    /** Password length */
+    @Param({"8", "16", "64"})
+    public int length;
+
+    private String password;
+    private Object validator;
+
+    @Setup
+    public void setUp() throws Throwable {
+        // One of each class up front, so the password passes every rule and isValid checks all of them
+        password = "Aa1!" + Inputs.text(length - 4, length);
+        validator = (Object) App.STANDARD_VALIDATOR.invokeExact();
+    }
+
+    @Benchmark
+    public boolean isValid() throws Throwable {
+        return (boolean) App.IS_VALID.invokeExact(password);
+    }
+
+    @Benchmark
+    public Object evaluate() throws Throwable {
+        return (Object) App.EVALUATE.invokeExact(validator, password);
+    }
+}